@@ -31,4 +31,41 @@ public interface IInspection {
 
 	IInspectionResult execute(ISnapshot snapshot, IProgressListener listener) throws Exception;
 
+	/**
+	 * Returns the highest severity this inspection can report. An inspection
+	 * whose highest severity is below the minimum severity of the report is not
+	 * executed at all.
+	 * 
+	 * @return The highest severity of this inspection's results
+	 */
+	default InspectionResultSeverity getMaximumSeverity() {
+		return InspectionResultSeverity.SEVERE;
+	}
+
+	/**
+	 * Quickly determines the severity of the result that
+	 * {@link #execute(ISnapshot, IProgressListener)} would return, without
+	 * computing that result. The inspection is only executed if its verdict is at
+	 * or above the minimum severity of the report.
+	 * <p>
+	 * Implementations should only perform cheap checks, such as comparing
+	 * instance counts against a threshold or stopping a walk of the heap as soon
+	 * as the answer is known. The default returns
+	 * {@link #getMaximumSeverity()}, which always executes the inspection.
+	 * 
+	 * @param snapshot The snapshot to be inspected
+	 * @param listener The progress listener
+	 * @return The severity the result would have, or null if there would be
+	 *         nothing to report
+	 * @throws Exception
+	 * @see co.senn.eclipse.mat.inspection.util.InspectionUtil#countObjectsOfType(String,
+	 *      boolean, ISnapshot)
+	 * @see co.senn.eclipse.mat.inspection.util.InspectionUtil#visitObjectsOfType(String,
+	 *      boolean, ISnapshot,
+	 *      co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotPredicate)
+	 */
+	default InspectionResultSeverity getVerdict(ISnapshot snapshot, IProgressListener listener) throws Exception {
+		return getMaximumSeverity();
+	}
+
 }
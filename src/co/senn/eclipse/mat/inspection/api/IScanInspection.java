@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.api;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.util.IProgressListener;
+
+import co.senn.eclipse.mat.inspection.util.HeapScan;
+import co.senn.eclipse.mat.inspection.util.HeapScan.Subscription;
+
+/**
+ * An {@link IInspection} that is fed from a {@link HeapScan} shared with the
+ * other inspections of the report, instead of walking the heap itself.
+ * <p>
+ * During the report, all scan inspections of the present technologies
+ * {@linkplain #subscribe(ISnapshot, HeapScan) subscribe} to a single scan,
+ * which is then run once. Each inspection is then asked to
+ * {@linkplain #complete(ISnapshot, Object, IProgressListener) complete} its
+ * result from the state it gathered. Because an inspection instance is shared
+ * across reports, that state is returned from {@code subscribe} rather than
+ * kept in fields.
+ * 
+ * @param <S> The type of the state gathered during the scan
+ * @author Andy Senn
+ */
+public interface IScanInspection<S> extends IInspection {
+
+	/**
+	 * Subscribes to the types this inspection needs to visit and returns the state
+	 * that the subscriptions will populate.
+	 * 
+	 * @param snapshot The snapshot to be inspected
+	 * @param scan     The scan to subscribe to
+	 * @return The state to be passed to
+	 *         {@link #complete(ISnapshot, Object, IProgressListener)}
+	 * @throws SnapshotException
+	 */
+	S subscribe(ISnapshot snapshot, HeapScan scan) throws SnapshotException;
+
+	/**
+	 * Produces the result of this inspection from the state gathered during the
+	 * scan.
+	 * 
+	 * @param snapshot The snapshot to be inspected
+	 * @param state    The state returned from
+	 *                 {@link #subscribe(ISnapshot, HeapScan)}
+	 * @param listener The progress listener
+	 * @return The result of the inspection
+	 * @throws Exception
+	 */
+	IInspectionResult complete(ISnapshot snapshot, S state, IProgressListener listener) throws Exception;
+
+	/**
+	 * Runs this inspection on its own, with a scan that is not shared.
+	 */
+	@Override
+	default IInspectionResult execute(ISnapshot snapshot, IProgressListener listener) throws Exception {
+		HeapScan scan = new HeapScan(snapshot);
+		S state = subscribe(snapshot, scan);
+		scan.run(listener);
+
+		for (Subscription subscription : scan.getSubscriptions()) {
+			if (subscription.getFailure() != null) {
+				throw subscription.getFailure();
+			}
+		}
+
+		return complete(snapshot, state, listener);
+	}
+
+}
@@ -22,6 +22,8 @@ import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.snapshot.ISnapshot;
 import org.eclipse.mat.snapshot.model.IClass;
 
+import co.senn.eclipse.mat.inspection.util.PackageIndex;
+
 /**
  * An interface for the various technologies (libraries, containers, etc) that
  * may be found in a heap dump.
@@ -41,18 +43,51 @@ public interface ITechnology {
 	boolean isPresent(ISnapshot snapshot) throws SnapshotException;
 
 	/**
-	 * Queries the specified snapshot for classes in the package by the specified
-	 * name and returns a boolean indicating whether any were found.
+	 * Queries the specified snapshot for classes whose names match the specified
+	 * regular expression followed by any characters, and returns a boolean
+	 * indicating whether any were found.
+	 * <p>
+	 * Names without any regular expression metacharacters other than dots are
+	 * taken literally and answered from the snapshot's {@link PackageIndex},
+	 * whether they are found or not, so "com.foo" matches com.foobar but not
+	 * comXfoo. All other names require a pass over every class.
 	 * 
 	 * @param snapshot    The snapshot to be queried
-	 * @param packageName The name of the package to be queried
+	 * @param packageName The name of the package to be queried, as a regular
+	 *                    expression
 	 * @return A boolean indicating whether any classes for the specified package
 	 *         were found
 	 * @throws SnapshotException
+	 * @deprecated Use {@link #hasPackage(ISnapshot, String)}, which matches
+	 *             package names literally and is always answered from the index
 	 */
+	@Deprecated
 	static boolean isPackagePresent(ISnapshot snapshot, String packageName) throws SnapshotException {
+		if (packageName.chars().noneMatch(c -> "\\^$|?*+()[]{}".indexOf(c) >= 0)) {
+			return PackageIndex.of(snapshot).hasClassWithPrefix(packageName);
+		}
+
 		Collection<IClass> classes = snapshot.getClassesByName(Pattern.compile(packageName + ".*"), true);
 		return classes != null && classes.size() > 0;
 	}
 
+	/**
+	 * Queries the specified snapshot for classes in the package by the specified
+	 * name, or any of its subpackages, and returns a boolean indicating whether any
+	 * were found. The name is matched literally, so "com.foo" does not match
+	 * com.foobar.
+	 * <p>
+	 * Lookups are answered from the snapshot's {@link PackageIndex}, which is built
+	 * once and shared by all technologies.
+	 * 
+	 * @param snapshot    The snapshot to be queried
+	 * @param packageName The name of the package to be queried
+	 * @return A boolean indicating whether any classes for the specified package
+	 *         were found
+	 * @throws SnapshotException
+	 */
+	static boolean hasPackage(ISnapshot snapshot, String packageName) throws SnapshotException {
+		return PackageIndex.of(snapshot).isPackagePresent(packageName);
+	}
+
 }
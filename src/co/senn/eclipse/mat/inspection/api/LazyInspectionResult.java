@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.api;
+
+import java.util.function.Supplier;
+
+import org.eclipse.mat.query.IResult;
+
+/**
+ * An inspection result whose detailed result is created by a supplier instead
+ * of up front. The only saving is for results below the minimum severity,
+ * whose details are never created. Every reported result has its details
+ * created once, on the inspection's worker and within its budget, and kept for
+ * the report, the summary and the findings file.
+ * <p>
+ * To avoid resolving the objects of a large result, return an
+ * {@link co.senn.eclipse.mat.inspection.util.ObjectIdTable}, whose cells are
+ * only computed when they are displayed.
+ * 
+ * @author Andy Senn
+ */
+public final class LazyInspectionResult implements IInspectionResult {
+
+	private final InspectionResultSeverity severity;
+	private final String resultSummary;
+	private Supplier<? extends IResult> supplier;
+	private IResult result;
+
+	/**
+	 * @param severity      The severity of the result
+	 * @param resultSummary A summary of the result
+	 * @param supplier      Creates the detailed result when it is first
+	 *                      requested; any exception it throws is reported as a
+	 *                      failure of the inspection
+	 */
+	public LazyInspectionResult(InspectionResultSeverity severity, String resultSummary,
+			Supplier<? extends IResult> supplier) {
+		this.severity = severity;
+		this.resultSummary = resultSummary;
+		this.supplier = supplier;
+	}
+
+	@Override
+	public String getResultSummary() {
+		return resultSummary;
+	}
+
+	@Override
+	public synchronized IResult getResult() {
+		if (supplier != null) {
+			result = supplier.get();
+			supplier = null;
+		}
+		return result;
+	}
+
+	@Override
+	public InspectionResultSeverity getSeverity() {
+		return severity;
+	}
+
+}
@@ -0,0 +1,560 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes synthetic heap dumps in the HPROF format, so that inspections can be
+ * measured on dumps of any size without sharing production dumps. A dump
+ * contains:
+ * <ul>
+ * <li>a number of classes spread over the configured packages, so that
+ * technologies looking for those packages are detected, each with a number of
+ * instances that refer to one another</li>
+ * <li>a number of {@code java.util.HashMap}s of {@code String} keys and
+ * {@code Integer} values</li>
+ * <li>a single, deep chain of linked nodes</li>
+ * <li>a number of strings, many of which have the same contents</li>
+ * </ul>
+ * All counts except the number of classes and maps are multiplied by the scale
+ * given to {@link #write(File, int)}, so that the same shape can be written at
+ * 1x, 10x and 100x the size. Strings use the compact {@code byte[]} layout of
+ * Java 9 and later.
+ * 
+ * @author Andy Senn
+ */
+public final class HeapDumpGenerator {
+
+	private static final String HEADER = "JAVA PROFILE 1.0.2";
+	private static final int ID_SIZE = 8;
+	private static final int ID_STEP = 16;
+
+	// Sub-records are collected into segments of about this size
+	private static final int SEGMENT_SIZE = 32 << 20;
+
+	// Record tags
+	private static final int STRING = 0x01;
+	private static final int LOAD_CLASS = 0x02;
+	private static final int HEAP_DUMP_SEGMENT = 0x1C;
+	private static final int HEAP_DUMP_END = 0x2C;
+
+	// Heap dump sub-record tags
+	private static final int ROOT_UNKNOWN = 0xFF;
+	private static final int ROOT_STICKY_CLASS = 0x05;
+	private static final int CLASS_DUMP = 0x20;
+	private static final int INSTANCE_DUMP = 0x21;
+	private static final int OBJECT_ARRAY_DUMP = 0x22;
+	private static final int PRIMITIVE_ARRAY_DUMP = 0x23;
+
+	// Basic types
+	private static final byte OBJECT = 2;
+	private static final byte BOOLEAN = 4;
+	private static final byte CHAR = 5;
+	private static final byte FLOAT = 6;
+	private static final byte DOUBLE = 7;
+	private static final byte BYTE = 8;
+	private static final byte SHORT = 9;
+	private static final byte INT = 10;
+	private static final byte LONG = 11;
+
+	private int classes = 100;
+	private int instancesPerClass = 1_000;
+	private int hashMaps = 10;
+	private int hashMapSize = 10_000;
+	private int chainDepth = 10_000;
+	private int strings = 100_000;
+	private int distinctStrings = 1_000;
+	private String[] packages = { "com.example.synthetic" };
+
+	/**
+	 * Sets the number of synthetic classes and the number of instances of each at
+	 * a scale of 1.
+	 */
+	public HeapDumpGenerator setClasses(int classes, int instancesPerClass) {
+		this.classes = Math.max(0, classes);
+		this.instancesPerClass = Math.max(0, instancesPerClass);
+		return this;
+	}
+
+	/**
+	 * Sets the number of maps and the number of entries in each at a scale of 1.
+	 */
+	public HeapDumpGenerator setHashMaps(int hashMaps, int hashMapSize) {
+		this.hashMaps = Math.max(0, hashMaps);
+		this.hashMapSize = Math.max(0, hashMapSize);
+		return this;
+	}
+
+	/**
+	 * Sets the length of the chain of linked nodes at a scale of 1.
+	 */
+	public HeapDumpGenerator setChainDepth(int chainDepth) {
+		this.chainDepth = Math.max(0, chainDepth);
+		return this;
+	}
+
+	/**
+	 * Sets the number of strings at a scale of 1, and the number of different
+	 * contents among them.
+	 */
+	public HeapDumpGenerator setStrings(int strings, int distinctStrings) {
+		this.strings = Math.max(0, strings);
+		this.distinctStrings = Math.max(1, distinctStrings);
+		return this;
+	}
+
+	/**
+	 * Sets the packages of the synthetic classes, which are used in turn.
+	 */
+	public HeapDumpGenerator setPackages(String... packages) {
+		if (packages.length == 0) {
+			throw new IllegalArgumentException("At least one package is required");
+		}
+		this.packages = packages.clone();
+		return this;
+	}
+
+	/**
+	 * Writes a dump at the specified scale to the specified file.
+	 * 
+	 * @param file  The file to be written
+	 * @param scale The factor by which all counts except the number of classes
+	 *              and maps are multiplied
+	 * @return The number of objects written, including classes
+	 * @throws IOException
+	 */
+	public long write(File file, int scale) throws IOException {
+		if (scale < 1) {
+			throw new IllegalArgumentException("Invalid scale: " + scale);
+		}
+
+		try (Dump dump = new Dump(file)) {
+			dump.write(scale);
+			return dump.objects;
+		}
+	}
+
+	private static int scaled(int count, int scale) {
+		long scaled = (long) count * scale;
+		if (scaled > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many objects: " + count + " x " + scale);
+		}
+		return (int) scaled;
+	}
+
+	private static int getFieldSize(byte type) {
+		switch (type) {
+		case OBJECT:
+			return ID_SIZE;
+		case BOOLEAN:
+		case BYTE:
+			return 1;
+		case CHAR:
+		case SHORT:
+			return 2;
+		case FLOAT:
+		case INT:
+			return 4;
+		case DOUBLE:
+		case LONG:
+			return 8;
+		default:
+			throw new IllegalArgumentException("Unknown basic type: " + type);
+		}
+	}
+
+	/**
+	 * A class and the fields of its instances.
+	 */
+	private static final class ClassDef {
+
+		private final String name;
+		private final ClassDef superclass;
+		private final String[] fieldNames;
+		private final byte[] fieldTypes;
+		private long id;
+
+		private ClassDef(String name, ClassDef superclass, Object... fields) {
+			this.name = name;
+			this.superclass = superclass;
+			this.fieldNames = new String[fields.length / 2];
+			this.fieldTypes = new byte[fields.length / 2];
+			for (int i = 0; i < fieldNames.length; i++) {
+				fieldNames[i] = (String) fields[2 * i];
+				fieldTypes[i] = (Byte) fields[2 * i + 1];
+			}
+		}
+
+		/**
+		 * Returns the types of all fields of an instance, in dump order: the fields
+		 * of this class first, then those of its superclasses.
+		 */
+		private byte[] getAllFieldTypes() {
+			byte[] inherited = superclass == null ? new byte[0] : superclass.getAllFieldTypes();
+			byte[] types = Arrays.copyOf(fieldTypes, fieldTypes.length + inherited.length);
+			System.arraycopy(inherited, 0, types, fieldTypes.length, inherited.length);
+			return types;
+		}
+
+		private int getInstanceSize() {
+			int size = 0;
+			for (byte type : getAllFieldTypes()) {
+				size += getFieldSize(type);
+			}
+			return size;
+		}
+
+	}
+
+	private final class Dump implements Closeable {
+
+		private final DataOutputStream out;
+		private final ByteArrayOutputStream segmentBuffer = new ByteArrayOutputStream(SEGMENT_SIZE + (1 << 20));
+		private final DataOutputStream segment = new DataOutputStream(segmentBuffer);
+		private final Map<String, Long> names = new HashMap<>();
+		private final Map<ClassDef, byte[]> fieldTypes = new HashMap<>();
+		private long nextId = 0x100000;
+		private long objects;
+
+		private final ClassDef object = new ClassDef("java.lang.Object", null);
+		private final ClassDef clazz = new ClassDef("java.lang.Class", object);
+		private final ClassDef string = new ClassDef("java.lang.String", object, "value", OBJECT, "hash", INT,
+				"coder", BYTE);
+		private final ClassDef number = new ClassDef("java.lang.Number", object);
+		private final ClassDef integer = new ClassDef("java.lang.Integer", number, "value", INT);
+		private final ClassDef abstractMap = new ClassDef("java.util.AbstractMap", object, "keySet", OBJECT,
+				"values", OBJECT);
+		private final ClassDef hashMap = new ClassDef("java.util.HashMap", abstractMap, "table", OBJECT, "entrySet",
+				OBJECT, "size", INT, "modCount", INT, "threshold", INT, "loadFactor", FLOAT);
+		private final ClassDef hashMapNode = new ClassDef("java.util.HashMap$Node", object, "hash", INT, "key",
+				OBJECT, "value", OBJECT, "next", OBJECT);
+		private final ClassDef objectArray = new ClassDef("[Ljava.lang.Object;", object);
+		private final ClassDef nodeArray = new ClassDef("[Ljava.util.HashMap$Node;", object);
+		private final ClassDef byteArray = new ClassDef("[B", object);
+		private final ClassDef chainNode = new ClassDef(packages[0] + ".ChainNode", object, "next", OBJECT, "depth",
+				INT);
+
+		private Dump(File file) throws IOException {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		}
+
+		private void write(int scale) throws IOException {
+			List<ClassDef> classDefs = new ArrayList<>(Arrays.asList(object, clazz, string, number, integer,
+					abstractMap, hashMap, hashMapNode, objectArray, nodeArray, byteArray, chainNode));
+			List<ClassDef> syntheticClasses = new ArrayList<>();
+			for (int i = 0; i < classes; i++) {
+				syntheticClasses.add(new ClassDef(packages[i % packages.length] + ".Synthetic" + i, object, "id", LONG,
+						"value", INT, "previous", OBJECT));
+			}
+			classDefs.addAll(syntheticClasses);
+
+			out.write(HEADER.getBytes(StandardCharsets.US_ASCII));
+			out.writeByte(0);
+			out.writeInt(ID_SIZE);
+			out.writeLong(System.currentTimeMillis());
+
+			writeClasses(classDefs);
+			writeSyntheticInstances(syntheticClasses, scaled(instancesPerClass, scale));
+			writeChain(scaled(chainDepth, scale));
+			writeStrings(scaled(strings, scale));
+			for (int i = 0; i < hashMaps; i++) {
+				writeHashMap(scaled(hashMapSize, scale));
+			}
+		}
+
+		private void writeClasses(List<ClassDef> classDefs) throws IOException {
+			int serial = 0;
+			for (ClassDef classDef : classDefs) {
+				classDef.id = allocate(1);
+				fieldTypes.put(classDef, classDef.getAllFieldTypes());
+
+				// Class names are written in their internal form
+				long nameId = name(classDef.name.replace('.', '/'));
+				out.writeByte(LOAD_CLASS);
+				out.writeInt(0);
+				out.writeInt(4 + ID_SIZE + 4 + ID_SIZE);
+				out.writeInt(++serial);
+				out.writeLong(classDef.id);
+				out.writeInt(0);
+				out.writeLong(nameId);
+			}
+
+			for (ClassDef classDef : classDefs) {
+				long[] fieldNameIds = new long[classDef.fieldNames.length];
+				for (int i = 0; i < fieldNameIds.length; i++) {
+					fieldNameIds[i] = name(classDef.fieldNames[i]);
+				}
+
+				segment.writeByte(CLASS_DUMP);
+				segment.writeLong(classDef.id);
+				segment.writeInt(0);
+				segment.writeLong(classDef.superclass == null ? 0 : classDef.superclass.id);
+
+				// Class loader, signers, protection domain and two reserved IDs
+				for (int i = 0; i < 5; i++) {
+					segment.writeLong(0);
+				}
+
+				segment.writeInt(classDef.getInstanceSize());
+				segment.writeShort(0);
+				segment.writeShort(0);
+				segment.writeShort(fieldNameIds.length);
+				for (int i = 0; i < fieldNameIds.length; i++) {
+					segment.writeLong(fieldNameIds[i]);
+					segment.writeByte(classDef.fieldTypes[i]);
+				}
+
+				segment.writeByte(ROOT_STICKY_CLASS);
+				segment.writeLong(classDef.id);
+				objects++;
+				flushSegmentIfFull();
+			}
+		}
+
+		/**
+		 * Writes the instances of each class, each referring to the one before it,
+		 * and an array holding all of them.
+		 */
+		private void writeSyntheticInstances(List<ClassDef> syntheticClasses, int count) throws IOException {
+			for (ClassDef classDef : syntheticClasses) {
+				long first = allocate(count);
+				for (int i = 0; i < count; i++) {
+					writeInstance(first + (long) i * ID_STEP, classDef, i, i % 1_000,
+							i == 0 ? 0 : first + (long) (i - 1) * ID_STEP);
+				}
+				writeRoot(writeObjectArray(objectArray, first, count, ID_STEP));
+			}
+		}
+
+		/**
+		 * Writes a linked list of the specified length, which is kept alive only by
+		 * its first node.
+		 */
+		private void writeChain(int depth) throws IOException {
+			if (depth == 0) {
+				return;
+			}
+
+			long first = allocate(depth);
+			for (int i = 0; i < depth; i++) {
+				long next = i == depth - 1 ? 0 : first + (long) (i + 1) * ID_STEP;
+				writeInstance(first + (long) i * ID_STEP, chainNode, next, i);
+			}
+			writeRoot(first);
+		}
+
+		/**
+		 * Writes strings whose contents repeat every {@code distinctStrings}, each
+		 * with its own {@code byte[]}, and an array holding all of them.
+		 */
+		private void writeStrings(int count) throws IOException {
+			long first = allocate(2 * count);
+			for (int i = 0; i < count; i++) {
+				long id = first + 2L * i * ID_STEP;
+				writeString(id, id + ID_STEP, "duplicated-string-" + i % distinctStrings);
+			}
+			writeRoot(writeObjectArray(objectArray, first, count, 2 * ID_STEP));
+		}
+
+		/**
+		 * Writes a map laid out as {@code java.util.HashMap} would lay it out, with
+		 * colliding keys chained through their nodes.
+		 */
+		private void writeHashMap(int size) throws IOException {
+			int capacity = 16;
+			while (capacity < Integer.MAX_VALUE >> 1 && capacity * 0.75 < size) {
+				capacity <<= 1;
+			}
+
+			// Each entry is a node, a key string, the key's byte[] and an integer value
+			long first = allocate(4 * size);
+			long mapId = allocate(1);
+
+			int[] heads = new int[capacity];
+			Arrays.fill(heads, -1);
+			for (int i = 0; i < size; i++) {
+				long entry = first + 4L * i * ID_STEP;
+				String key = "key-" + mapId + "-" + i;
+				int hash = key.hashCode() ^ key.hashCode() >>> 16;
+				int bucket = hash & (capacity - 1);
+
+				long next = heads[bucket] < 0 ? 0 : first + 4L * heads[bucket] * ID_STEP;
+				heads[bucket] = i;
+
+				writeInstance(entry, hashMapNode, hash, entry + ID_STEP, entry + 3 * ID_STEP, next);
+				writeString(entry + ID_STEP, entry + 2 * ID_STEP, key);
+				writeInstance(entry + 3 * ID_STEP, integer, i);
+			}
+
+			long tableId = allocate(1);
+			segment.writeByte(OBJECT_ARRAY_DUMP);
+			segment.writeLong(tableId);
+			segment.writeInt(0);
+			segment.writeInt(capacity);
+			segment.writeLong(nodeArray.id);
+			for (int head : heads) {
+				segment.writeLong(head < 0 ? 0 : first + 4L * head * ID_STEP);
+			}
+			objects++;
+			flushSegmentIfFull();
+
+			writeInstance(mapId, hashMap, tableId, 0, size, size, (long) (capacity * 0.75),
+					Float.floatToIntBits(0.75f), 0, 0);
+			writeRoot(mapId);
+		}
+
+		private void writeString(long id, long valueId, String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+			segment.writeByte(PRIMITIVE_ARRAY_DUMP);
+			segment.writeLong(valueId);
+			segment.writeInt(0);
+			segment.writeInt(bytes.length);
+			segment.writeByte(BYTE);
+			segment.write(bytes);
+			objects++;
+
+			// Compact strings are Latin-1, coder 0
+			writeInstance(id, string, valueId, value.hashCode(), 0);
+		}
+
+		/**
+		 * Writes an instance with the specified field values, in the order of
+		 * {@link ClassDef#getAllFieldTypes()}.
+		 */
+		private void writeInstance(long id, ClassDef classDef, long... values) throws IOException {
+			byte[] types = fieldTypes.get(classDef);
+			segment.writeByte(INSTANCE_DUMP);
+			segment.writeLong(id);
+			segment.writeInt(0);
+			segment.writeLong(classDef.id);
+			segment.writeInt(classDef.getInstanceSize());
+			for (int i = 0; i < types.length; i++) {
+				// Values are given as raw bits, so only the size of each field matters
+				switch (getFieldSize(types[i])) {
+				case 1:
+					segment.writeByte((int) values[i]);
+					break;
+				case 2:
+					segment.writeShort((int) values[i]);
+					break;
+				case 4:
+					segment.writeInt((int) values[i]);
+					break;
+				default:
+					segment.writeLong(values[i]);
+				}
+			}
+			objects++;
+			flushSegmentIfFull();
+		}
+
+		/**
+		 * Writes an array of object IDs that start at the specified ID and are a
+		 * fixed distance apart, and returns the ID of the array.
+		 */
+		private long writeObjectArray(ClassDef arrayClass, long first, int length, long step) throws IOException {
+			long id = allocate(1);
+			segment.writeByte(OBJECT_ARRAY_DUMP);
+			segment.writeLong(id);
+			segment.writeInt(0);
+			segment.writeInt(length);
+			segment.writeLong(arrayClass.id);
+			for (int i = 0; i < length; i++) {
+				segment.writeLong(first + i * step);
+			}
+			objects++;
+			flushSegmentIfFull();
+			return id;
+		}
+
+		private void writeRoot(long id) throws IOException {
+			segment.writeByte(ROOT_UNKNOWN);
+			segment.writeLong(id);
+			flushSegmentIfFull();
+		}
+
+		/**
+		 * Returns the ID of a string record with the specified contents, writing the
+		 * record if it has not been written yet.
+		 */
+		private long name(String value) throws IOException {
+			Long id = names.get(value);
+			if (id == null) {
+				id = allocate(1);
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				out.writeByte(STRING);
+				out.writeInt(0);
+				out.writeInt(ID_SIZE + bytes.length);
+				out.writeLong(id);
+				out.write(bytes);
+				names.put(value, id);
+			}
+			return id;
+		}
+
+		/**
+		 * Reserves the specified number of consecutive IDs and returns the first.
+		 */
+		private long allocate(int count) {
+			long first = nextId;
+			nextId += (long) count * ID_STEP;
+			return first;
+		}
+
+		private void flushSegmentIfFull() throws IOException {
+			if (segmentBuffer.size() >= SEGMENT_SIZE) {
+				flushSegment();
+			}
+		}
+
+		private void flushSegment() throws IOException {
+			if (segmentBuffer.size() > 0) {
+				out.writeByte(HEAP_DUMP_SEGMENT);
+				out.writeInt(0);
+				out.writeInt(segmentBuffer.size());
+				segmentBuffer.writeTo(out);
+				segmentBuffer.reset();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flushSegment();
+				out.writeByte(HEAP_DUMP_END);
+				out.writeInt(0);
+				out.writeInt(0);
+			} finally {
+				out.close();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.report.Spec;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotFactory;
+import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.IProgressListener.OperationCanceledException;
+import org.eclipse.mat.util.VoidProgressListener;
+
+import co.senn.eclipse.mat.inspection.exec.InspectionBatchResult.Status;
+import co.senn.eclipse.mat.inspection.internal.exec.HeapSampler;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionExecutor;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionReportWriter;
+
+/**
+ * Parses and inspects a number of heap dumps without a user interface. Each
+ * dump's report is written as text to its own output directory, together with
+ * the performance of its inspections.
+ * <p>
+ * Parsing a dump takes a lot of memory, so by default dumps are processed one
+ * at a time, with their inspections executed in parallel.
+ * 
+ * @author Andy Senn
+ */
+public final class InspectionBatch {
+
+	public static final String REPORT_FILE = "inspection-report.txt";
+	public static final String PERFORMANCE_FILE = "inspection-performance.csv";
+	public static final String FINDINGS_FILE = "inspection-findings.jsonl";
+	public static final String SUMMARY_FILE = "inspection-batch.csv";
+
+	private final File outputDirectory;
+	private final int parallelism;
+	private final int inspectionParallelism;
+	private final IProgressListener listener = new VoidProgressListener() {
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+	};
+	private volatile boolean canceled;
+
+	/**
+	 * @param outputDirectory       The directory in which a directory is created
+	 *                              for each dump, or null to create it next to
+	 *                              the dump
+	 * @param parallelism           The maximum number of dumps processed at once
+	 * @param inspectionParallelism The maximum number of inspections executed at
+	 *                              once for each dump
+	 */
+	public InspectionBatch(File outputDirectory, int parallelism, int inspectionParallelism) {
+		this.outputDirectory = outputDirectory;
+		this.parallelism = Math.max(1, parallelism);
+		this.inspectionParallelism = Math.max(1, inspectionParallelism);
+	}
+
+	public InspectionBatch(File outputDirectory) {
+		this(outputDirectory, 1, InspectionExecutor.getDefaultParallelism());
+	}
+
+	/**
+	 * Returns the heap dumps in the specified directory, sorted by name.
+	 */
+	public static List<File> findDumps(File directory) {
+		File[] dumps = directory.listFiles(f -> f.isFile() && f.getName().toLowerCase().endsWith(".hprof"));
+		if (dumps == null) {
+			return Collections.emptyList();
+		}
+
+		Arrays.sort(dumps);
+		return Arrays.asList(dumps);
+	}
+
+	/**
+	 * Returns the directory to which the results of the specified dump are
+	 * written.
+	 */
+	public File getOutputDirectory(File dump) {
+		String name = dump.getName();
+		int extension = name.lastIndexOf('.');
+		name = (extension > 0 ? name.substring(0, extension) : name) + "_Inspections";
+		return new File(outputDirectory != null ? outputDirectory : dump.getAbsoluteFile().getParentFile(), name);
+	}
+
+	/**
+	 * Processes the specified dumps, logging progress to the specified stream,
+	 * and returns their results in the same order. A dump that fails does not
+	 * stop the others.
+	 */
+	public List<InspectionBatchResult> run(List<File> dumps, PrintStream log) throws InterruptedException {
+		ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, dumps.size())));
+		try (HeapSampler sampler = new HeapSampler()) {
+			List<Future<InspectionBatchResult>> futures = new ArrayList<>();
+			for (File dump : dumps) {
+				futures.add(workers.submit(() -> process(dump, sampler, log)));
+			}
+
+			List<InspectionBatchResult> results = new ArrayList<>();
+			for (Future<InspectionBatchResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					// Failures are caught by process(), so only errors can end up here
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops the batch. Dumps that are being processed stop at their next
+	 * cancellation check, and dumps that have not been started are skipped.
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Writes the specified results as CSV to {@value #SUMMARY_FILE} in the
+	 * specified directory.
+	 */
+	public static File writeSummary(List<InspectionBatchResult> results, File directory) throws IOException {
+		File file = new File(directory, SUMMARY_FILE);
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			InspectionBatchResult.writeCsv(results, out);
+		}
+		return file;
+	}
+
+	private InspectionBatchResult process(File dump, HeapSampler sampler, PrintStream log) {
+		if (canceled) {
+			return new InspectionBatchResult(dump, Status.SKIPPED, -1, -1, -1, -1, null);
+		}
+
+		HeapSampler.Tracker tracker = sampler.track();
+		long start = System.nanoTime();
+		long parseTime = -1;
+		long objects = -1;
+		ISnapshot snapshot = null;
+		try {
+			log.println("Parsing " + dump);
+			snapshot = SnapshotFactory.openSnapshot(dump, Collections.emptyMap(), listener);
+			parseTime = toMillis(System.nanoTime() - start);
+			objects = snapshot.getSnapshotInfo().getNumberOfObjects();
+
+			log.println("Inspecting " + dump);
+			long inspectionStart = System.nanoTime();
+			File output = getOutputDirectory(dump);
+			if (!output.isDirectory() && !output.mkdirs()) {
+				throw new IOException("Unable to create " + output);
+			}
+
+			InspectionQuerySpec query = new InspectionQuerySpec();
+			query.snapshot = snapshot;
+			query.parallelism = inspectionParallelism;
+			query.performanceReport = new File(output, PERFORMANCE_FILE);
+			query.findingsFile = new File(output, FINDINGS_FILE);
+			IResult report = query.execute(listener);
+
+			try (Writer out = new OutputStreamWriter(new FileOutputStream(new File(output, REPORT_FILE)),
+					StandardCharsets.UTF_8)) {
+				new InspectionReportWriter(out).write((Spec) report);
+			}
+
+			InspectionBatchResult result = new InspectionBatchResult(dump, Status.COMPLETED, objects, parseTime,
+					toMillis(System.nanoTime() - inspectionStart), tracker.stop(), null);
+			log.println(String.format("Inspected %s in %d ms (parse %d ms, inspections %d ms), %d objects, "
+					+ "peak heap %d MB, %d KB/s", dump, result.getParseTime() + result.getInspectionTime(),
+					result.getParseTime(), result.getInspectionTime(), objects, result.getPeakHeap() >> 20,
+					result.getThroughput() >> 10));
+			return result;
+		} catch (OperationCanceledException e) {
+			log.println("Skipped " + dump);
+			return new InspectionBatchResult(dump, Status.SKIPPED, objects, parseTime, -1, tracker.stop(), null);
+		} catch (Exception e) {
+			log.println("Failed to inspect " + dump + ": " + e);
+			return new InspectionBatchResult(dump, Status.FAILED, objects, parseTime, -1, tracker.stop(),
+					e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+		} finally {
+			if (snapshot != null) {
+				SnapshotFactory.dispose(snapshot);
+			}
+		}
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos / 1_000_000;
+	}
+
+}
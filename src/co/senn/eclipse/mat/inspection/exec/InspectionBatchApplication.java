@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+
+import co.senn.eclipse.mat.inspection.exec.InspectionBatchResult.Status;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionExecutor;
+
+/**
+ * Runs an {@link InspectionBatch} from the command line, in the same way that
+ * Memory Analyzer's ParseHeapDump script runs its reports:
+ * 
+ * <pre>
+ * MemoryAnalyzer -consolelog -application co.senn.eclipse.mat.inspection.batch
+ *     [-output &lt;directory&gt;] [-parallelism &lt;n&gt;] [-inspectionParallelism &lt;n&gt;]
+ *     [-benchmark &lt;iterations&gt;] [-warmup &lt;iterations&gt;]
+ *     [-generate &lt;scale&gt;,...] [-packages &lt;package&gt;,...]
+ *     [&lt;dump or directory&gt;...]
+ * </pre>
+ * 
+ * Directories are searched for ".hprof" files. A summary of every dump is
+ * written to the output directory, or to the first input if none is specified.
+ * The exit code is 0 if every dump was inspected and 1 otherwise.
+ * <p>
+ * With "-benchmark", the dumps are not inspected; instead, an
+ * {@link InspectionBenchmark} is run on each of them and its results are
+ * written in place of the summary.
+ * <p>
+ * With "-generate", a synthetic dump is first written to the output directory
+ * by a {@link HeapDumpGenerator} for each of the specified scales, with its
+ * classes in the specified packages, and is processed together with the other
+ * dumps.
+ * 
+ * @author Andy Senn
+ */
+public final class InspectionBatchApplication implements IApplication {
+
+	private volatile InspectionBatch batch;
+
+	@Override
+	public Object start(IApplicationContext context) throws Exception {
+		String[] args = (String[]) context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+
+		File outputDirectory = null;
+		int parallelism = 1;
+		int inspectionParallelism = InspectionExecutor.getDefaultParallelism();
+		int benchmarkIterations = 0;
+		int warmupIterations = 2;
+		String[] scales = {};
+		String[] packages = {};
+		List<File> inputs = new ArrayList<>();
+		for (int i = 0; args != null && i < args.length; i++) {
+			switch (args[i]) {
+			case "-output":
+				outputDirectory = new File(next(args, ++i));
+				break;
+			case "-parallelism":
+				parallelism = Integer.parseInt(next(args, ++i));
+				break;
+			case "-inspectionParallelism":
+				inspectionParallelism = Integer.parseInt(next(args, ++i));
+				break;
+			case "-benchmark":
+				benchmarkIterations = Integer.parseInt(next(args, ++i));
+				break;
+			case "-warmup":
+				warmupIterations = Integer.parseInt(next(args, ++i));
+				break;
+			case "-generate":
+				scales = next(args, ++i).split(",");
+				break;
+			case "-packages":
+				packages = next(args, ++i).split(",");
+				break;
+			default:
+				inputs.add(new File(args[i]));
+			}
+		}
+
+		List<File> dumps = new ArrayList<>();
+		for (File input : inputs) {
+			if (input.isDirectory()) {
+				dumps.addAll(InspectionBatch.findDumps(input));
+			} else if (input.isFile()) {
+				dumps.add(input);
+			} else {
+				System.err.println("Not found: " + input);
+			}
+		}
+
+		File summaryDirectory = outputDirectory != null ? outputDirectory
+				: inputs.isEmpty() ? new File(".").getAbsoluteFile() : inputs.get(0).getAbsoluteFile();
+		if (!summaryDirectory.isDirectory()) {
+			summaryDirectory = summaryDirectory.getParentFile();
+		}
+		summaryDirectory.mkdirs();
+
+		HeapDumpGenerator generator = new HeapDumpGenerator();
+		if (packages.length > 0) {
+			generator.setPackages(packages);
+		}
+		for (String scale : scales) {
+			File dump = new File(summaryDirectory, "synthetic-" + scale.trim() + "x.hprof");
+			System.out.println("Generating " + dump);
+			long objects = generator.write(dump, Integer.parseInt(scale.trim()));
+			System.out.println(String.format("Generated %s with %d objects, %d MB", dump, objects,
+					dump.length() >> 20));
+			dumps.add(dump);
+		}
+
+		if (dumps.isEmpty()) {
+			System.err.println("Usage: [-output <directory>] [-parallelism <n>] [-inspectionParallelism <n>] "
+					+ "[-benchmark <iterations>] [-warmup <iterations>] [-generate <scale>,...] "
+					+ "[-packages <package>,...] [<dump or directory>...]");
+			return 1;
+		}
+
+		if (benchmarkIterations > 0) {
+			context.applicationRunning();
+			List<InspectionBenchmarkResult> results = new InspectionBenchmark(warmupIterations, benchmarkIterations)
+					.run(dumps, System.out);
+			System.out.println("Benchmark results in " + InspectionBenchmark.writeResults(results, summaryDirectory));
+			return results.isEmpty() ? 1 : IApplication.EXIT_OK;
+		}
+
+		batch = new InspectionBatch(outputDirectory, parallelism, inspectionParallelism);
+		context.applicationRunning();
+
+		long start = System.nanoTime();
+		List<InspectionBatchResult> results = batch.run(dumps, System.out);
+		long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+		File summary = InspectionBatch.writeSummary(results, summaryDirectory);
+
+		long completed = results.stream().filter(r -> r.getStatus() == Status.COMPLETED).count();
+		System.out.println(String.format("Inspected %d of %d dumps in %d ms (%.1f dumps per hour), summary in %s",
+				completed, results.size(), elapsed, completed * 3_600_000.0 / elapsed, summary));
+
+		return completed == results.size() ? IApplication.EXIT_OK : 1;
+	}
+
+	private static String next(String[] args, int i) {
+		if (i >= args.length) {
+			throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+		}
+		return args[i];
+	}
+
+	@Override
+	public void stop() {
+		InspectionBatch batch = this.batch;
+		if (batch != null) {
+			batch.cancel();
+		}
+	}
+
+}
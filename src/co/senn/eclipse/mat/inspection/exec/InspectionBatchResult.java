@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import co.senn.eclipse.mat.inspection.internal.util.CsvUtil;
+
+/**
+ * The outcome of inspecting a single heap dump in an {@link InspectionBatch}.
+ * Times are in milliseconds and sizes in bytes; values that could not be
+ * measured are -1.
+ * 
+ * @author Andy Senn
+ */
+public final class InspectionBatchResult {
+
+	public enum Status {
+		COMPLETED, FAILED, SKIPPED
+	}
+
+	private final File dump;
+	private final Status status;
+	private final long fileSize;
+	private final long objects;
+	private final long parseTime;
+	private final long inspectionTime;
+	private final long peakHeap;
+	private final String failureMessage;
+
+	public InspectionBatchResult(File dump, Status status, long objects, long parseTime, long inspectionTime,
+			long peakHeap, String failureMessage) {
+		this.dump = dump;
+		this.status = status;
+		this.fileSize = dump.length();
+		this.objects = objects;
+		this.parseTime = parseTime;
+		this.inspectionTime = inspectionTime;
+		this.peakHeap = peakHeap;
+		this.failureMessage = failureMessage;
+	}
+
+	public File getDump() {
+		return dump;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	public long getObjects() {
+		return objects;
+	}
+
+	/**
+	 * Returns the time taken to parse or reopen the dump.
+	 */
+	public long getParseTime() {
+		return parseTime;
+	}
+
+	/**
+	 * Returns the time taken to run the inspections and write their report.
+	 */
+	public long getInspectionTime() {
+		return inspectionTime;
+	}
+
+	/**
+	 * Returns the highest used heap of the JVM observed while the dump was
+	 * processed. When several dumps are processed at once, this includes the
+	 * memory used by all of them.
+	 */
+	public long getPeakHeap() {
+		return peakHeap;
+	}
+
+	/**
+	 * Returns the size of the dump processed per second, in bytes.
+	 */
+	public long getThroughput() {
+		long time = Math.max(0, parseTime) + Math.max(0, inspectionTime);
+		return time <= 0 ? -1 : fileSize * 1000 / time;
+	}
+
+	public String getFailureMessage() {
+		return failureMessage;
+	}
+
+	/**
+	 * Writes the specified results as CSV, with a header row.
+	 */
+	public static void writeCsv(List<InspectionBatchResult> results, Writer out) throws IOException {
+		out.write(String.format("dump,status,fileSize,objects,parseTimeMs,inspectionTimeMs,peakHeapBytes,"
+				+ "bytesPerSecond,failure%n"));
+		for (InspectionBatchResult result : results) {
+			out.write(String.format("%s,%s,%d,%d,%d,%d,%d,%d,%s%n", CsvUtil.quote(result.dump.getPath()),
+					result.status, result.fileSize, result.objects, result.parseTime, result.inspectionTime,
+					result.peakHeap, result.getThroughput(), CsvUtil.quote(result.failureMessage)));
+		}
+	}
+
+}
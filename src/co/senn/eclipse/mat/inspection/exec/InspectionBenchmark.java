@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotFactory;
+import org.eclipse.mat.util.VoidProgressListener;
+
+import co.senn.eclipse.mat.inspection.api.ITechnology;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionMetrics;
+import co.senn.eclipse.mat.inspection.util.FieldAccessor;
+import co.senn.eclipse.mat.inspection.util.InspectionUtil;
+import co.senn.eclipse.mat.inspection.util.PrimitiveValueUtil;
+
+/**
+ * Measures the hot paths of the plug-in against real heap dumps, so that a
+ * slower release shows up as numbers before it is deployed. Each benchmark is
+ * run a number of times to warm up, and then measured over a number of
+ * iterations for its throughput, its allocation and the garbage collections
+ * that happened while it ran.
+ * <p>
+ * Allocation is measured for all threads on Java 21 and later. On older JVMs
+ * only the calling thread is measured, which excludes the inspections that
+ * {@link InspectionQuerySpec} executes on its workers.
+ * 
+ * @author Andy Senn
+ */
+public final class InspectionBenchmark {
+
+	public static final String BENCHMARK_FILE = "inspection-benchmark.csv";
+
+	// The number of strings on which field accessors are measured
+	private static final int SAMPLE_SIZE = 10_000;
+
+	// Packages that are commonly probed by technologies, both present and absent
+	private static final String[] PACKAGES = { "java.util", "org.apache.catalina", "org.springframework",
+			"org.hibernate", "co.senn.absent" };
+
+	// A package expression of the kind that technologies written for isPackagePresent still use
+	private static final String PACKAGE_EXPRESSION = "org\\.(apache|eclipse)\\.jetty";
+
+	// @formatter:off
+	@SuppressWarnings("deprecation")
+	private static final List<Benchmark> BENCHMARKS = Arrays.asList(
+			new Benchmark("InspectionUtil.getObjects", (snapshot, sample) ->
+					InspectionUtil.getObjects("java.lang.String", false, snapshot).size()),
+			new Benchmark("InspectionUtil.forEachObjectOfType", (snapshot, sample) -> {
+				long[] count = new long[1];
+				InspectionUtil.forEachObjectOfType("java.lang.String", false, snapshot, o -> count[0]++);
+				return count[0];
+			}),
+			new Benchmark("PrimitiveValueUtil.getInt", (snapshot, sample) -> {
+				for (int objectId : sample) {
+					PrimitiveValueUtil.getInt(snapshot.getObject(objectId), "hash");
+				}
+				return sample.length;
+			}),
+			new Benchmark("FieldAccessor.getInts", (snapshot, sample) ->
+					FieldAccessor.of("hash").getInts(snapshot, sample, 0).length),
+			new Benchmark("ITechnology.hasPackage", (snapshot, sample) -> {
+				for (String packageName : PACKAGES) {
+					ITechnology.hasPackage(snapshot, packageName);
+				}
+				return PACKAGES.length;
+			}),
+			new Benchmark("ITechnology.isPackagePresent", (snapshot, sample) -> {
+				for (String packageName : PACKAGES) {
+					ITechnology.isPackagePresent(snapshot, packageName);
+				}
+				ITechnology.isPackagePresent(snapshot, PACKAGE_EXPRESSION);
+				return PACKAGES.length + 1;
+			}),
+			new Benchmark("InspectionUtil.getInspections", (snapshot, sample) ->
+					co.senn.eclipse.mat.inspection.internal.util.InspectionUtil.getInspections().size()),
+			new Benchmark("InspectionQuerySpec.execute", (snapshot, sample) -> {
+				InspectionQuerySpec query = new InspectionQuerySpec();
+				query.snapshot = snapshot;
+				query.useStoredResults = false;
+				query.isolated = true;
+				query.execute(new VoidProgressListener());
+				return 1;
+			})
+	);
+	// @formatter:on
+
+	private final int warmupIterations;
+	private final int iterations;
+
+	/**
+	 * @param warmupIterations The number of unmeasured iterations of each
+	 *                         benchmark
+	 * @param iterations       The number of measured iterations of each
+	 *                         benchmark
+	 */
+	public InspectionBenchmark(int warmupIterations, int iterations) {
+		this.warmupIterations = Math.max(0, warmupIterations);
+		this.iterations = Math.max(1, iterations);
+	}
+
+	/**
+	 * Benchmarks the specified dumps one at a time, logging progress to the
+	 * specified stream, and returns the results of all of them. A dump that
+	 * fails does not stop the others.
+	 */
+	public List<InspectionBenchmarkResult> run(List<File> dumps, PrintStream log) {
+		List<InspectionBenchmarkResult> results = new ArrayList<>();
+		for (File dump : dumps) {
+			ISnapshot snapshot = null;
+			try {
+				log.println("Parsing " + dump);
+				snapshot = SnapshotFactory.openSnapshot(dump, Collections.emptyMap(), new VoidProgressListener());
+				results.addAll(run(dump, snapshot, log));
+			} catch (Exception e) {
+				log.println("Failed to benchmark " + dump + ": " + e);
+			} finally {
+				if (snapshot != null) {
+					SnapshotFactory.dispose(snapshot);
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Benchmarks the specified snapshot of the specified dump.
+	 */
+	public List<InspectionBenchmarkResult> run(File dump, ISnapshot snapshot, PrintStream log) throws Exception {
+		int[] sample = InspectionUtil.getObjectIds("java.lang.String", false, snapshot).toArray();
+		sample = Arrays.copyOf(sample, Math.min(sample.length, SAMPLE_SIZE));
+
+		List<InspectionBenchmarkResult> results = new ArrayList<>();
+		for (Benchmark benchmark : BENCHMARKS) {
+			InspectionBenchmarkResult result = benchmark.run(dump, snapshot, sample, warmupIterations, iterations);
+			log.println(String.format(Locale.ROOT, "%s on %s: %d us/op, %.1f items/s, %d bytes/op, %d GCs (%d ms)",
+					result.getBenchmark(), dump.getName(), result.getTimePerOperation(), result.getItemsPerSecond(),
+					result.getAllocatedBytesPerOperation(), result.getGcCount(), result.getGcTime()));
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Writes the specified results as CSV to {@value #BENCHMARK_FILE} in the
+	 * specified directory.
+	 */
+	public static File writeResults(List<InspectionBenchmarkResult> results, File directory) throws IOException {
+		File file = new File(directory, BENCHMARK_FILE);
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			InspectionBenchmarkResult.writeCsv(results, out);
+		}
+		return file;
+	}
+
+	private static long allocatedBytes() {
+		long total = InspectionMetrics.getTotalAllocatedBytes();
+		return total >= 0 ? total : InspectionMetrics.getCurrentAllocatedBytes();
+	}
+
+	private static long[] collections() {
+		long count = 0;
+		long time = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (collector.getCollectionCount() < 0) {
+				return new long[] { -1, -1 };
+			}
+			count += collector.getCollectionCount();
+			time += Math.max(0, collector.getCollectionTime());
+		}
+		return new long[] { count, time };
+	}
+
+	@FunctionalInterface
+	private static interface Operation {
+
+		/**
+		 * Runs the operation once and returns the number of items it processed.
+		 */
+		long run(ISnapshot snapshot, int[] sample) throws Exception;
+
+	}
+
+	private static final class Benchmark {
+
+		private final String name;
+		private final Operation operation;
+
+		private Benchmark(String name, Operation operation) {
+			this.name = name;
+			this.operation = operation;
+		}
+
+		private InspectionBenchmarkResult run(File dump, ISnapshot snapshot, int[] sample, int warmupIterations,
+				int iterations) throws Exception {
+			for (int i = 0; i < warmupIterations; i++) {
+				operation.run(snapshot, sample);
+			}
+
+			long[] collectionsBefore = collections();
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+
+			long items = 0;
+			for (int i = 0; i < iterations; i++) {
+				items = operation.run(snapshot, sample);
+			}
+
+			long time = System.nanoTime() - start;
+			long allocatedAfter = allocatedBefore < 0 ? -1 : allocatedBytes();
+			long[] collectionsAfter = collections();
+
+			// @formatter:off
+			return new InspectionBenchmarkResult(dump, name, iterations, items, time,
+					allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore,
+					collectionsBefore[0] < 0 ? -1 : collectionsAfter[0] - collectionsBefore[0],
+					collectionsBefore[1] < 0 ? -1 : collectionsAfter[1] - collectionsBefore[1]);
+			// @formatter:on
+		}
+
+	}
+
+}
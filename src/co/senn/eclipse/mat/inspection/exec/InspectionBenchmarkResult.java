@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+import co.senn.eclipse.mat.inspection.internal.util.CsvUtil;
+
+/**
+ * The measurements of a single benchmark of an {@link InspectionBenchmark} on
+ * a single heap dump, averaged over its measured iterations. Values that the
+ * running JVM cannot measure are -1.
+ * 
+ * @author Andy Senn
+ */
+public final class InspectionBenchmarkResult {
+
+	private final File dump;
+	private final String benchmark;
+	private final int iterations;
+	private final long items;
+	private final long timeNanos;
+	private final long allocatedBytes;
+	private final long gcCount;
+	private final long gcTime;
+
+	/**
+	 * @param dump           The benchmarked dump
+	 * @param benchmark      The name of the benchmark
+	 * @param iterations     The number of measured iterations
+	 * @param items          The number of items, such as objects, processed by
+	 *                       each iteration
+	 * @param timeNanos      The total time of all iterations
+	 * @param allocatedBytes The total allocation of all iterations, or -1
+	 * @param gcCount        The number of collections during all iterations, or
+	 *                       -1
+	 * @param gcTime         The time spent collecting during all iterations, in
+	 *                       milliseconds, or -1
+	 */
+	public InspectionBenchmarkResult(File dump, String benchmark, int iterations, long items, long timeNanos,
+			long allocatedBytes, long gcCount, long gcTime) {
+		this.dump = dump;
+		this.benchmark = benchmark;
+		this.iterations = iterations;
+		this.items = items;
+		this.timeNanos = timeNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.gcCount = gcCount;
+		this.gcTime = gcTime;
+	}
+
+	public File getDump() {
+		return dump;
+	}
+
+	public String getBenchmark() {
+		return benchmark;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Returns the number of items processed by each iteration.
+	 */
+	public long getItems() {
+		return items;
+	}
+
+	/**
+	 * Returns the average time of an iteration, in microseconds.
+	 */
+	public long getTimePerOperation() {
+		return timeNanos / Math.max(1, iterations) / 1_000;
+	}
+
+	/**
+	 * Returns the number of iterations that would complete per second.
+	 */
+	public double getOperationsPerSecond() {
+		return timeNanos <= 0 ? -1 : iterations * 1_000_000_000.0 / timeNanos;
+	}
+
+	/**
+	 * Returns the number of items that would be processed per second.
+	 */
+	public double getItemsPerSecond() {
+		return timeNanos <= 0 ? -1 : iterations * items * 1_000_000_000.0 / timeNanos;
+	}
+
+	/**
+	 * Returns the average allocation of an iteration, in bytes.
+	 */
+	public long getAllocatedBytesPerOperation() {
+		return allocatedBytes < 0 ? -1 : allocatedBytes / Math.max(1, iterations);
+	}
+
+	/**
+	 * Returns the allocation rate while the iterations ran, in bytes per second.
+	 */
+	public long getAllocationRate() {
+		return allocatedBytes < 0 || timeNanos <= 0 ? -1 : (long) (allocatedBytes * 1_000_000_000.0 / timeNanos);
+	}
+
+	public long getGcCount() {
+		return gcCount;
+	}
+
+	public long getGcTime() {
+		return gcTime;
+	}
+
+	/**
+	 * Writes the specified results as CSV, with a header row.
+	 */
+	public static void writeCsv(List<InspectionBenchmarkResult> results, Writer out) throws IOException {
+		out.write(String.format("dump,benchmark,iterations,items,usPerOp,opsPerSecond,itemsPerSecond,"
+				+ "allocatedBytesPerOp,allocationBytesPerSecond,gcCount,gcTimeMs%n"));
+		for (InspectionBenchmarkResult result : results) {
+			out.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.3f,%.1f,%d,%d,%d,%d%n",
+					CsvUtil.quote(result.dump.getPath()), CsvUtil.quote(result.benchmark), result.iterations,
+					result.items, result.getTimePerOperation(), result.getOperationsPerSecond(),
+					result.getItemsPerSecond(), result.getAllocatedBytesPerOperation(), result.getAllocationRate(),
+					result.gcCount, result.gcTime));
+		}
+	}
+
+}
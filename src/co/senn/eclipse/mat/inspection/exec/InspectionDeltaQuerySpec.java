@@ -0,0 +1,277 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.query.IQuery;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.annotations.Argument;
+import org.eclipse.mat.query.annotations.Argument.Advice;
+import org.eclipse.mat.query.annotations.CommandName;
+import org.eclipse.mat.query.results.ListResult;
+import org.eclipse.mat.query.results.TextResult;
+import org.eclipse.mat.report.QuerySpec;
+import org.eclipse.mat.report.SectionSpec;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.util.IProgressListener;
+
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionOutcome.Status;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionSummary;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionSummaryStore;
+
+/**
+ * Compares the inspection findings of a snapshot with those of a baseline
+ * snapshot of the same application, such as a dump taken an hour earlier, and
+ * reports for each inspection whether its finding appeared, vanished, grew or
+ * shrank.
+ * <p>
+ * Only the summaries that each report keeps next to the snapshot's index files
+ * are compared. The Inspection Report is run on a snapshot only if it has no
+ * summaries yet, and then reuses any stored results.
+ * 
+ * @author Andy Senn
+ */
+@CommandName("inspections:delta")
+public final class InspectionDeltaQuerySpec implements IQuery {
+
+	public enum Change {
+		APPEARED, GREW, SHRANK, VANISHED, NOT_COMPARABLE
+	}
+
+	@Argument
+	public ISnapshot snapshot;
+
+	@Argument(advice = Advice.SECONDARY_SNAPSHOT)
+	public ISnapshot baseline;
+
+	@Override
+	public IResult execute(IProgressListener listener) throws Exception {
+		listener.subTask("Reading baseline inspection summaries");
+		InspectionSummaryStore baselineStore = new InspectionSummaryStore(baseline);
+		Map<String, InspectionSummary> baselineSummaries = loadOrInspect(baseline, baselineStore, listener);
+
+		listener.subTask("Reading inspection summaries");
+		InspectionSummaryStore store = new InspectionSummaryStore(snapshot);
+		Map<String, InspectionSummary> summaries = loadOrInspect(snapshot, store, listener);
+
+		// Inspections of both snapshots, in report order
+		Set<String> inspectionIds = new LinkedHashSet<>(summaries.keySet());
+		inspectionIds.addAll(baselineSummaries.keySet());
+
+		List<InspectionDeltaResult> deltas = new ArrayList<>();
+		for (String inspectionId : inspectionIds) {
+			InspectionDeltaResult delta = compare(baselineSummaries.get(inspectionId), summaries.get(inspectionId));
+			if (delta != null) {
+				deltas.add(delta);
+			}
+		}
+		deltas.sort(Comparator.comparing(InspectionDeltaResult::getChange));
+
+		SectionSpec parent = new SectionSpec("Inspection Delta");
+		InspectionResultSeverity baselineSeverity = baselineStore.loadMinimumSeverity();
+		InspectionResultSeverity severity = store.loadMinimumSeverity();
+		if (baselineSeverity != severity) {
+			parent.add(new QuerySpec("Warning", new TextResult(String.format(
+					"The baseline reported %s and above, but this snapshot reported %s and above, so some findings "
+							+ "may only appear or vanish because of the difference.",
+					baselineSeverity, severity))));
+		}
+
+		if (deltas.isEmpty()) {
+			parent.add(new SectionSpec("No changes found"));
+		} else {
+			parent.add(new QuerySpec("Changed Findings",
+					new ListResult(InspectionDeltaResult.class, deltas, "technologyName", "inspectionName", "change",
+							"baselineSeverity", "severity", "baselineObjects", "objects", "objectsDelta",
+							"baselineRetainedSize", "retainedSize", "retainedSizeDelta", "summary")));
+		}
+
+		return parent;
+	}
+
+	/**
+	 * Returns the summaries of the specified snapshot, running the Inspection
+	 * Report on it first if it has none.
+	 */
+	private static Map<String, InspectionSummary> loadOrInspect(ISnapshot snapshot, InspectionSummaryStore store,
+			IProgressListener listener) throws Exception {
+		Map<String, InspectionSummary> summaries = store.load();
+		if (summaries == null) {
+			InspectionQuerySpec query = new InspectionQuerySpec();
+			query.snapshot = snapshot;
+			query.sizeFindings = true;
+			query.execute(listener);
+
+			summaries = store.load();
+			if (summaries == null) {
+				throw new SnapshotException(
+						"Unable to store inspection summaries for " + snapshot.getSnapshotInfo().getPath());
+			}
+		}
+		return summaries;
+	}
+
+	/**
+	 * Compares the summaries of an inspection, either of which may be missing,
+	 * and returns null if its finding did not change.
+	 */
+	private static InspectionDeltaResult compare(InspectionSummary before, InspectionSummary after) {
+		boolean foundBefore = before != null && before.hasFinding();
+		boolean foundAfter = after != null && after.hasFinding();
+		boolean failed = before != null && before.getStatus() != Status.COMPLETED
+				|| after != null && after.getStatus() != Status.COMPLETED;
+
+		Change change;
+		if (failed && (foundBefore || foundAfter)) {
+			change = Change.NOT_COMPARABLE;
+		} else if (!foundBefore && !foundAfter) {
+			return null;
+		} else if (!foundBefore) {
+			change = Change.APPEARED;
+		} else if (!foundAfter) {
+			change = Change.VANISHED;
+		} else {
+			int growth = compareGrowth(before, after);
+			if (growth == 0) {
+				return null;
+			}
+			change = growth > 0 ? Change.GREW : Change.SHRANK;
+		}
+
+		return new InspectionDeltaResult(before, after, change);
+	}
+
+	/**
+	 * Compares the object counts of two findings, then their retained sizes, and
+	 * then their severities.
+	 */
+	private static int compareGrowth(InspectionSummary before, InspectionSummary after) {
+		if (before.getObjects() >= 0 && after.getObjects() >= 0 && before.getObjects() != after.getObjects()) {
+			return Long.compare(after.getObjects(), before.getObjects());
+		}
+		if (before.getRetainedSize() >= 0 && after.getRetainedSize() >= 0
+				&& before.getRetainedSize() != after.getRetainedSize()) {
+			return Long.compare(after.getRetainedSize(), before.getRetainedSize());
+		}
+
+		return after.getSeverity().compareTo(before.getSeverity());
+	}
+
+	public static class InspectionDeltaResult {
+
+		private final String technologyName;
+		private final String inspectionName;
+		private final Change change;
+		private final String baselineSeverity;
+		private final String severity;
+		private final long baselineObjects;
+		private final long objects;
+		private final long baselineRetainedSize;
+		private final long retainedSize;
+		private final String summary;
+
+		private InspectionDeltaResult(InspectionSummary before, InspectionSummary after, Change change) {
+			InspectionSummary latest = after != null ? after : before;
+			this.technologyName = latest.getTechnologyName();
+			this.inspectionName = latest.getInspectionName();
+			this.change = change;
+			this.baselineSeverity = describe(before);
+			this.severity = describe(after);
+			this.baselineObjects = before != null && before.hasFinding() ? before.getObjects() : 0;
+			this.objects = after != null && after.hasFinding() ? after.getObjects() : 0;
+			this.baselineRetainedSize = before != null && before.hasFinding() ? before.getRetainedSize() : 0;
+			this.retainedSize = after != null && after.hasFinding() ? after.getRetainedSize() : 0;
+			this.summary = after != null && after.hasFinding() ? after.getSummary()
+					: before != null ? before.getSummary() : null;
+		}
+
+		private static String describe(InspectionSummary summary) {
+			if (summary == null) {
+				return "Not inspected";
+			}
+			if (!summary.hasFinding()) {
+				return summary.getStatus() == Status.COMPLETED ? "None" : summary.getStatus().name();
+			}
+			return summary.getSeverity().getName();
+		}
+
+		public String getTechnologyName() {
+			return technologyName;
+		}
+
+		public String getInspectionName() {
+			return inspectionName;
+		}
+
+		public Change getChange() {
+			return change;
+		}
+
+		public String getBaselineSeverity() {
+			return baselineSeverity;
+		}
+
+		public String getSeverity() {
+			return severity;
+		}
+
+		public long getBaselineObjects() {
+			return baselineObjects;
+		}
+
+		public long getObjects() {
+			return objects;
+		}
+
+		/**
+		 * Returns the change in the number of objects, or 0 if either count is not
+		 * known.
+		 */
+		public long getObjectsDelta() {
+			return baselineObjects < 0 || objects < 0 ? 0 : objects - baselineObjects;
+		}
+
+		public long getBaselineRetainedSize() {
+			return baselineRetainedSize;
+		}
+
+		public long getRetainedSize() {
+			return retainedSize;
+		}
+
+		/**
+		 * Returns the change in the retained size, or 0 if either size is not
+		 * known.
+		 */
+		public long getRetainedSizeDelta() {
+			return baselineRetainedSize < 0 || retainedSize < 0 ? 0 : retainedSize - baselineRetainedSize;
+		}
+
+		public String getSummary() {
+			return summary;
+		}
+
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionMetrics;
+import co.senn.eclipse.mat.inspection.internal.util.CsvUtil;
+import co.senn.eclipse.mat.inspection.internal.util.JsonUtil;
+
+/**
+ * A row of the "Inspection Performance" section, describing the cost of a
+ * single inspection. Times are in milliseconds; values that could not be
+ * measured are -1.
+ * 
+ * @author Andy Senn
+ */
+public final class InspectionPerformanceResult {
+
+	private final String technologyName;
+	private final String inspectionName;
+	private final String status;
+	private final long wallTime;
+	private final long cpuTime;
+	private final long allocatedBytes;
+	private final long objectsVisited;
+
+	public InspectionPerformanceResult(String technologyName, String inspectionName, String status,
+			InspectionMetrics metrics) {
+		this.technologyName = technologyName;
+		this.inspectionName = inspectionName;
+		this.status = status;
+		this.wallTime = toMillis(metrics.getWallTimeNanos());
+		this.cpuTime = toMillis(metrics.getCpuTimeNanos());
+		this.allocatedBytes = metrics.getAllocatedBytes();
+		this.objectsVisited = metrics.getObjectsVisited();
+	}
+
+	private static long toMillis(long nanos) {
+		return nanos < 0 ? -1 : nanos / 1_000_000;
+	}
+
+	public String getTechnologyName() {
+		return technologyName;
+	}
+
+	public String getInspectionName() {
+		return inspectionName;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public long getWallTime() {
+		return wallTime;
+	}
+
+	public long getCpuTime() {
+		return cpuTime;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public long getObjectsVisited() {
+		return objectsVisited;
+	}
+
+	/**
+	 * Writes the specified results as CSV, with a header row.
+	 */
+	public static void writeCsv(List<InspectionPerformanceResult> results, Writer out) throws IOException {
+		out.write(String.format("technology,inspection,status,wallTimeMs,cpuTimeMs,allocatedBytes,objectsVisited%n"));
+		for (InspectionPerformanceResult result : results) {
+			out.write(String.format("%s,%s,%s,%d,%d,%d,%d%n", CsvUtil.quote(result.technologyName),
+					CsvUtil.quote(result.inspectionName), CsvUtil.quote(result.status), result.wallTime,
+					result.cpuTime, result.allocatedBytes, result.objectsVisited));
+		}
+	}
+
+	/**
+	 * Writes the specified results as a JSON array of objects.
+	 */
+	public static void writeJson(List<InspectionPerformanceResult> results, Writer out) throws IOException {
+		out.write("[");
+		for (int i = 0; i < results.size(); i++) {
+			InspectionPerformanceResult result = results.get(i);
+			out.write(String.format(
+					"%s%n  {\"technology\": %s, \"inspection\": %s, \"status\": %s, \"wallTimeMs\": %d, "
+							+ "\"cpuTimeMs\": %d, \"allocatedBytes\": %d, \"objectsVisited\": %d}",
+					i == 0 ? "" : ",", JsonUtil.quote(result.technologyName), JsonUtil.quote(result.inspectionName),
+					JsonUtil.quote(result.status), result.wallTime, result.cpuTime, result.allocatedBytes,
+					result.objectsVisited));
+		}
+		out.write(String.format("%n]%n"));
+	}
+
+}
@@ -15,13 +15,22 @@
  */
 package co.senn.eclipse.mat.inspection.exec;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -37,13 +46,28 @@ import org.eclipse.mat.report.SectionSpec;
 import org.eclipse.mat.report.Spec;
 import org.eclipse.mat.snapshot.ISnapshot;
 import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.IProgressListener.Severity;
 
 import co.senn.eclipse.mat.inspection.api.IInspectionResult;
 import co.senn.eclipse.mat.inspection.api.Ignore;
 import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.internal.exec.ConcurrentProgressListener;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionCostModel;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionExecutor;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionJsonLinesWriter;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionOutcome;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionOutcome.Status;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionResultStore;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionSummary;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionSummaryStore;
+import co.senn.eclipse.mat.inspection.internal.exec.TechnologyDetectionCache;
 import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
 import co.senn.eclipse.mat.inspection.internal.spec.TechnologySpec;
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException;
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException.Kind;
 import co.senn.eclipse.mat.inspection.internal.util.InspectionUtil;
+import co.senn.eclipse.mat.inspection.preferences.InspectionsPreferenceHelper;
+import co.senn.eclipse.mat.inspection.util.StringCache;
 
 @CommandName("inspections:suspects")
 public final class InspectionQuerySpec implements IQuery {
@@ -51,6 +75,53 @@ public final class InspectionQuerySpec implements IQuery {
 	@Argument
 	public ISnapshot snapshot;
 
+	@Argument(isMandatory = false)
+	public int parallelism = InspectionExecutor.getDefaultParallelism();
+
+	/**
+	 * If specified, the per-inspection performance metrics are also written to
+	 * this file, as JSON if its name ends with ".json" and as CSV otherwise.
+	 */
+	@Argument(isMandatory = false)
+	public File performanceReport;
+
+	/**
+	 * Whether results stored by a previous report on the same snapshot are reused
+	 * instead of executing their inspections again.
+	 */
+	@Argument(isMandatory = false)
+	public boolean useStoredResults = true;
+
+	/**
+	 * If specified, the outcome of each inspection is also written to this file
+	 * as a line of JSON as soon as the inspection finishes.
+	 */
+	@Argument(isMandatory = false)
+	public File findingsFile;
+
+	/**
+	 * The lowest severity that is reported. Inspections whose verdict is below it
+	 * are not executed. Defaults to the severity chosen on the preference page.
+	 */
+	@Argument(isMandatory = false)
+	public InspectionResultSeverity minimumSeverity = InspectionsPreferenceHelper.getMinimumSeverity();
+
+	/**
+	 * Whether the saved summary of each inspection includes the approximate
+	 * retained size of the objects it found. Sizing adds a pass over the dominator
+	 * tree to each inspection, which counts against its budget.
+	 */
+	@Argument(isMandatory = false)
+	public boolean sizeFindings = false;
+
+	/**
+	 * Whether the report neither reads nor writes anything that outlives it: the
+	 * technology detection cache, the recorded inspection costs and the saved
+	 * summaries. Used by {@link InspectionBenchmark}, so that every iteration does
+	 * the same work.
+	 */
+	boolean isolated;
+
 	@Override
 	public IResult execute(IProgressListener listener) throws Exception {
 		listener.subTask("Resolving inspections");
@@ -58,8 +129,6 @@ public final class InspectionQuerySpec implements IQuery {
 		// Lookup all of the technologies and their inspections
 		Map<TechnologySpec, List<InspectionSpec>> inspectionsByTechnology = InspectionUtil.getInspections();
 
-		listener.beginTask("Inspecting technologies", inspectionsByTechnology.size());
-
 		// Technologies that were present in the snapshot and for which inspections were executed
 		Collection<TechnologySpec> presentTechnologies = new ArrayList<>();
 
@@ -72,40 +141,131 @@ public final class InspectionQuerySpec implements IQuery {
 		// Technologies that were skipped due to cancellation, whether present or not
 		Collection<TechnologySpec> skippedTechnologies = new ArrayList<>();
 
+		// Technologies whose inspections have all been disabled in the preferences, whether present or not
+		Collection<TechnologySpec> disabledTechnologies = new ArrayList<>();
+
+		// Technologies and inspections that will be executed, in report order
+		Map<TechnologySpec, List<InspectionSpec>> activeInspections = new LinkedHashMap<>();
+		int totalWork = 0;
+		for (Entry<TechnologySpec, List<InspectionSpec>> entry : inspectionsByTechnology.entrySet()) {
+			List<InspectionSpec> inspections = entry.getValue().stream()
+					.filter(i -> !InspectionsPreferenceHelper.isInspectionDisabled(i.getId()))
+					.collect(Collectors.toList());
+
+			// Don't bother loading or detecting a technology if none of its inspections would run
+			if (inspections.isEmpty()) {
+				disabledTechnologies.add(entry.getKey());
+			} else if (isIgnored(entry.getKey())) {
+				ignoredTechnologies.add(entry.getKey());
+			} else {
+				activeInspections.put(entry.getKey(), inspections);
+				totalWork += 1 + inspections.size();
+			}
+		}
+
+		IProgressListener progress = new ConcurrentProgressListener(listener);
+		progress.beginTask("Inspecting technologies", totalWork);
+
 		// Create the parent section
 		SectionSpec parent = new SectionSpec("Inspection Report");
 
-		Iterator<Entry<TechnologySpec, List<InspectionSpec>>> iterator = inspectionsByTechnology.entrySet().iterator();
-		Entry<TechnologySpec, List<InspectionSpec>> entry;
-		TechnologySpec technology;
-		List<InspectionSpec> inspections;
-		while (iterator.hasNext()) {
-			entry = iterator.next();
-			technology = entry.getKey();
-			inspections = entry.getValue();
-
-			if (isIgnored(technology.getClass())) {
-				ignoredTechnologies.add(technology);
-			} else {
-				listener.subTask("Inspecting " + technology.getName());
+		// The cost of each inspection that was executed
+		List<InspectionPerformanceResult> performance = new ArrayList<>();
+
+		// A compact record of each inspection that was not skipped, for comparisons with other snapshots
+		List<InspectionSummary> summaries = new ArrayList<>();
 
-				try {
-					if (technology.getTechnology().isPresent(snapshot)) {
+		// How often the facts shared by the inspections of this report were requested and computed
+		long factRequests;
+		long factComputations;
+
+		// Inspections are started longest first, as predicted by their previous runs
+		InspectionCostModel costs = isolated ? null : new InspectionCostModel(snapshot);
+		TechnologyDetectionCache detectionCache = isolated ? null : TechnologyDetectionCache.of(snapshot);
+
+		InspectionResultStore store = useStoredResults ? new InspectionResultStore(snapshot, minimumSeverity) : null;
+		try (InspectionJsonLinesWriter findings = openFindings();
+				InspectionExecutor executor = new InspectionExecutor(snapshot, progress, parallelism, store, findings,
+						minimumSeverity, costs, sizeFindings)) {
+			// Detect all of the technologies concurrently
+			Map<TechnologySpec, Future<Boolean>> detections = new LinkedHashMap<>();
+			for (TechnologySpec technology : activeInspections.keySet()) {
+				detections.put(technology, executor.detect(technology, detectionCache));
+			}
+
+			// Queue the inspections of each present technology as soon as it has been detected, in report order
+			Map<InspectionSpec, Future<InspectionOutcome>> executions = new HashMap<>();
+			try (InspectionExecutor.Batch batch = executor.begin()) {
+				for (Entry<TechnologySpec, Future<Boolean>> detection : detections.entrySet()) {
+					TechnologySpec technology = detection.getKey();
+					Boolean present = await(detection.getValue());
+					if (present == null) {
+						skippedTechnologies.add(technology);
+						progress.worked(activeInspections.get(technology).size());
+					} else if (present) {
 						presentTechnologies.add(technology);
-						Spec technologySection = createTechnologySection(technology, inspections, listener);
-						if (technologySection != null) {
-							parent.add(technologySection);
-						}
+
+						// Inspections are only loaded once their technology is known to be present
+						List<InspectionSpec> inspections = activeInspections.get(technology).stream()
+								.filter(i -> !isIgnored(i)).collect(Collectors.toList());
+						progress.worked(activeInspections.get(technology).size() - inspections.size());
+						activeInspections.put(technology, inspections);
+
+						// Scan inspections of all present technologies share a single heap scan
+						executions.putAll(batch.add(inspections));
 					} else {
 						missingTechnologies.add(technology);
+						progress.worked(activeInspections.get(technology).size());
 					}
-				} finally {
-					listener.worked(1);
 				}
 			}
 
-			if (listener.isCanceled()) {
-				break;
+			if (detectionCache != null) {
+				detectionCache.save();
+			}
+
+			// Assemble the sections in report order, regardless of completion order
+			for (TechnologySpec technology : presentTechnologies) {
+				List<InspectionOutcome> outcomes = new ArrayList<>();
+				for (InspectionSpec inspection : activeInspections.get(technology)) {
+					InspectionOutcome outcome = await(executions.get(inspection));
+					outcomes.add(outcome);
+
+					if (outcome.getSummary() != null) {
+						summaries.add(outcome.getSummary());
+					}
+
+					if (outcome.getMetrics() != null) {
+						performance.add(new InspectionPerformanceResult(technology.getName(), inspection.getName(),
+								outcome.getStatus().name(), outcome.getMetrics()));
+					}
+				}
+
+				if (!outcomes.isEmpty() && outcomes.stream().allMatch(o -> o.getStatus() == Status.SKIPPED)) {
+					skippedTechnologies.add(technology);
+				} else {
+					Spec technologySection = createTechnologySection(technology, outcomes);
+					if (technologySection != null) {
+						parent.add(technologySection);
+					}
+				}
+			}
+
+			if (findings != null) {
+				findings.checkError();
+			}
+
+			// A canceled report would look as if its remaining inspections found nothing
+			if (!listener.isCanceled() && !isolated) {
+				new InspectionSummaryStore(snapshot).save(minimumSeverity, summaries);
+			}
+
+			// The facts themselves are discarded with the executor
+			factRequests = executor.getFacts().getRequests();
+			factComputations = executor.getFacts().getComputations();
+		} finally {
+			if (costs != null) {
+				costs.save();
 			}
 		}
 
@@ -114,12 +274,6 @@ public final class InspectionQuerySpec implements IQuery {
 			parent.add(new SectionSpec("No issues found"));
 		}
 
-		// If there are still technologies on the iterator, they were skipped
-		while (iterator.hasNext()) {
-			entry = iterator.next();
-			skippedTechnologies.add(entry.getKey());
-		}
-
 		// If there were skipped technologies, print a list of them in a collapsed section
 		if (skippedTechnologies.size() > 0) {
 			parent.add(createTechnologyListSpec("The following technologies were skipped:", "Skipped Technologies",
@@ -132,36 +286,124 @@ public final class InspectionQuerySpec implements IQuery {
 					"Undetected Technologies", missingTechnologies));
 		}
 
+		// If there were disabled technologies, print a list of them in a collapsed section
+		if (disabledTechnologies.size() > 0) {
+			parent.add(createTechnologyListSpec("All inspections of the following technologies are disabled:",
+					"Disabled Technologies", disabledTechnologies));
+		}
+
+		// If any inspections were executed, list their cost in a collapsed section, slowest first
+		if (performance.size() > 0) {
+			performance.sort(Comparator.comparingLong(InspectionPerformanceResult::getWallTime).reversed());
+			parent.add(createPerformanceSpec(performance));
+
+			if (performanceReport != null) {
+				writePerformanceReport(performance, listener);
+			}
+		}
+
+		// If any inspection read strings through the shared cache, report its effectiveness in a collapsed section
+		StringCache.Statistics stringCacheStatistics = StringCache.of(snapshot).getStatistics();
+		if (stringCacheStatistics.getRequests() > 0) {
+			QuerySpec stringCacheSpec = new QuerySpec("String Cache",
+					new TextResult("Since the snapshot was opened: " + stringCacheStatistics));
+			stringCacheSpec.set("html.collapsed", "true");
+			parent.add(stringCacheSpec);
+		}
+
+		// If any inspection requested shared facts, report how often they were reused in a collapsed section
+		if (factRequests > 0) {
+			QuerySpec factSpec = new QuerySpec("Shared Facts", new TextResult(String.format(
+					"%d requests, %d computations", factRequests, factComputations)));
+			factSpec.set("html.collapsed", "true");
+			parent.add(factSpec);
+		}
+
 		return parent;
 	}
 
+	private InspectionJsonLinesWriter openFindings() throws IOException {
+		return findingsFile == null ? null : InspectionJsonLinesWriter.open(findingsFile);
+	}
+
 	private boolean isIgnored(Class<?> clazz) {
 		return clazz.isAnnotationPresent(Ignore.class);
 	}
 
-	private Spec createTechnologySection(TechnologySpec technology, List<InspectionSpec> inspections,
-			IProgressListener listener) throws Exception {
+	private boolean isIgnored(TechnologySpec technology) {
+		try {
+			return isIgnored(technology.getTechnology().getClass());
+		} catch (IllegalStateException e) {
+			// Technologies that cannot be instantiated fail during detection instead
+			return false;
+		}
+	}
+
+	private boolean isIgnored(InspectionSpec inspection) {
+		try {
+			return isIgnored(inspection.getInspection().getClass());
+		} catch (IllegalStateException e) {
+			// Inspections that cannot be instantiated are reported as failures instead
+			return false;
+		}
+	}
+
+	private static <T> T await(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private Spec createTechnologySection(TechnologySpec technology, List<InspectionOutcome> outcomes) {
 		SectionSpec technologySection = new SectionSpec(technology.getName());
 		Map<InspectionResultSeverity, AtomicInteger> severityCounts = new HashMap<>();
 		List<InspectionFailureResult> inspectionFailures = new ArrayList<>();
 		IInspectionResult result;
-		for (InspectionSpec inspection : inspections) {
-			if (!isIgnored(inspection.getClass())) {
-				try {
-					result = inspection.getInspection().execute(snapshot, listener);
-					if (result != null) {
-						if (result.getSeverity() == InspectionResultSeverity.FAILURE) {
-							inspectionFailures.add(createInspectionFailureResult(inspection, null));
-						} else {
-							severityCounts.computeIfAbsent(result.getSeverity(), s -> new AtomicInteger(0))
-									.incrementAndGet();
-							technologySection.add(new QuerySpec(
-									inspection.getName() + " - " + result.getSeverity().getName(), result.getResult()));
+		for (InspectionOutcome outcome : outcomes) {
+			InspectionSpec inspection = outcome.getInspection();
+			switch (outcome.getStatus()) {
+			case COMPLETED:
+				result = outcome.getResult();
+				if (result != null) {
+					if (result.getSeverity() == InspectionResultSeverity.FAILURE) {
+						inspectionFailures.add(createInspectionFailureResult(inspection, null));
+					} else {
+						IResult details;
+						try {
+							details = result.getResult();
+						} catch (RuntimeException e) {
+							// Lazily created results may fail only now
+							inspectionFailures.add(createInspectionFailureResult(inspection, e));
+							break;
 						}
+
+						severityCounts.computeIfAbsent(result.getSeverity(), s -> new AtomicInteger(0))
+								.incrementAndGet();
+						technologySection.add(new QuerySpec(
+								inspection.getName() + " - " + result.getSeverity().getName(), details));
 					}
-				} catch (Throwable t) {
-					inspectionFailures.add(createInspectionFailureResult(inspection, t));
 				}
+				break;
+			case FAILED:
+				inspectionFailures.add(createInspectionFailureResult(inspection, outcome.getFailure()));
+				break;
+			case TIMED_OUT:
+				Throwable failure = outcome.getFailure();
+				boolean overObjects = failure instanceof BudgetExceededException
+						&& ((BudgetExceededException) failure).getKind() == Kind.OBJECTS;
+				inspectionFailures.add(new InspectionFailureResult(inspection.getName(),
+						(overObjects ? "Object budget exceeded: " : "Timed out: ") + failure.getMessage()));
+				break;
+			case SKIPPED:
+				break;
 			}
 		}
 
@@ -198,6 +440,32 @@ public final class InspectionQuerySpec implements IQuery {
 		return technologyListSpec;
 	}
 
+	private Spec createPerformanceSpec(List<InspectionPerformanceResult> performance) {
+		QuerySpec performanceSpec = new QuerySpec("Inspection Performance",
+				new ListResult(InspectionPerformanceResult.class, performance, "technologyName", "inspectionName",
+						"status", "wallTime", "cpuTime", "allocatedBytes", "objectsVisited"));
+		performanceSpec.set("html.collapsed", "true");
+
+		return performanceSpec;
+	}
+
+	/**
+	 * Writes the performance report. It is a side file, so failing to write it
+	 * does not fail the report.
+	 */
+	private void writePerformanceReport(List<InspectionPerformanceResult> performance, IProgressListener listener) {
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(performanceReport), StandardCharsets.UTF_8)) {
+			if (performanceReport.getName().toLowerCase().endsWith(".json")) {
+				InspectionPerformanceResult.writeJson(performance, out);
+			} else {
+				InspectionPerformanceResult.writeCsv(performance, out);
+			}
+		} catch (IOException e) {
+			listener.sendUserMessage(Severity.WARNING,
+					"Unable to write the performance report to " + performanceReport.getPath(), e);
+		}
+	}
+
 	private InspectionFailureResult createInspectionFailureResult(InspectionSpec inspection, Throwable throwable) {
 		if (throwable == null) {
 			return new InspectionFailureResult(inspection.getName(), "(none)");
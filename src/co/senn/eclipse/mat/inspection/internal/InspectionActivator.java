@@ -0,0 +1,22 @@
+package co.senn.eclipse.mat.inspection.internal;
+
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+import co.senn.eclipse.mat.inspection.internal.util.InspectionUtil;
+
+/**
+ * Releases the plug-in's registry listener when the plug-in is stopped.
+ */
+public final class InspectionActivator implements BundleActivator {
+
+	@Override
+	public void start(BundleContext context) {
+	}
+
+	@Override
+	public void stop(BundleContext context) {
+		InspectionUtil.dispose();
+	}
+
+}
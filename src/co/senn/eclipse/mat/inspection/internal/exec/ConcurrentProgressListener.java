@@ -0,0 +1,48 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import org.eclipse.mat.util.IProgressListener;
+
+public final class ConcurrentProgressListener implements IProgressListener {
+
+	private final IProgressListener delegate;
+
+	public ConcurrentProgressListener(IProgressListener delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public synchronized void beginTask(String name, int totalWork) {
+		delegate.beginTask(name, totalWork);
+	}
+
+	@Override
+	public synchronized void done() {
+		delegate.done();
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	@Override
+	public void setCanceled(boolean value) {
+		delegate.setCanceled(value);
+	}
+
+	@Override
+	public synchronized void subTask(String name) {
+		delegate.subTask(name);
+	}
+
+	@Override
+	public synchronized void worked(int work) {
+		delegate.worked(work);
+	}
+
+	@Override
+	public synchronized void sendUserMessage(Severity severity, String message, Throwable exception) {
+		delegate.sendUserMessage(severity, message, exception);
+	}
+
+}
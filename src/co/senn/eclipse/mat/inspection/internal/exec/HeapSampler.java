@@ -0,0 +1,82 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically samples the used heap of the JVM and records the highest value
+ * seen by each active {@link Tracker}. Peaks are for the whole JVM, so work
+ * that runs concurrently is included in every tracker that overlaps it.
+ */
+public final class HeapSampler implements AutoCloseable {
+
+	private static final long INTERVAL_MILLIS = 100;
+
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final Set<Tracker> trackers = ConcurrentHashMap.newKeySet();
+	private final Thread thread;
+	private volatile boolean closed;
+
+	public HeapSampler() {
+		this.thread = new Thread(this::sample, "Inspection Heap Sampler");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Starts tracking the peak used heap until the returned tracker is stopped.
+	 */
+	public Tracker track() {
+		Tracker tracker = new Tracker();
+		tracker.update(memory.getHeapMemoryUsage().getUsed());
+		trackers.add(tracker);
+		return tracker;
+	}
+
+	private void sample() {
+		while (!closed) {
+			long used = memory.getHeapMemoryUsage().getUsed();
+			for (Tracker tracker : trackers) {
+				tracker.update(used);
+			}
+
+			try {
+				Thread.sleep(INTERVAL_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		thread.interrupt();
+	}
+
+	public final class Tracker {
+
+		private final AtomicLong peak = new AtomicLong();
+
+		private Tracker() {
+		}
+
+		private void update(long used) {
+			peak.accumulateAndGet(used, Math::max);
+		}
+
+		/**
+		 * Stops tracking and returns the peak used heap in bytes.
+		 */
+		public long stop() {
+			trackers.remove(this);
+			update(memory.getHeapMemoryUsage().getUsed());
+			return peak.get();
+		}
+
+	}
+
+}
@@ -0,0 +1,60 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+import co.senn.eclipse.mat.inspection.internal.spec.TechnologySpec;
+import co.senn.eclipse.mat.inspection.preferences.InspectionsPreferenceHelper;
+
+/**
+ * The time and object-visit limits placed on a single inspection. A limit of 0
+ * means unlimited.
+ */
+public final class InspectionBudget {
+
+	public static final InspectionBudget UNLIMITED = new InspectionBudget(0, 0);
+
+	private final long timeoutMillis;
+	private final long maxObjects;
+
+	public InspectionBudget(long timeoutMillis, long maxObjects) {
+		this.timeoutMillis = timeoutMillis;
+		this.maxObjects = maxObjects;
+	}
+
+	/**
+	 * Resolves the budget of the specified inspection from the preferences. A
+	 * limit configured for the inspection takes precedence over one configured for
+	 * its technology, which in turn takes precedence over the default.
+	 */
+	public static InspectionBudget of(InspectionSpec inspection) {
+		TechnologySpec technology = inspection.getTechnology();
+		String technologyId = technology == null ? "" : technology.getId();
+
+		// @formatter:off
+		long timeoutSeconds = InspectionsPreferenceHelper.getLong(
+				InspectionsPreferenceHelper.INSPECTION_TIMEOUT_PREFIX + inspection.getId(),
+				InspectionsPreferenceHelper.getLong(
+						InspectionsPreferenceHelper.TECHNOLOGY_TIMEOUT_PREFIX + technologyId,
+						InspectionsPreferenceHelper.getLong(InspectionsPreferenceHelper.DEFAULT_TIMEOUT, 0)));
+		long maxObjects = InspectionsPreferenceHelper.getLong(
+				InspectionsPreferenceHelper.INSPECTION_MAX_OBJECTS_PREFIX + inspection.getId(),
+				InspectionsPreferenceHelper.getLong(
+						InspectionsPreferenceHelper.TECHNOLOGY_MAX_OBJECTS_PREFIX + technologyId,
+						InspectionsPreferenceHelper.getLong(InspectionsPreferenceHelper.DEFAULT_MAX_OBJECTS, 0)));
+		// @formatter:on
+
+		return new InspectionBudget(Math.max(0, timeoutSeconds) * 1000, Math.max(0, maxObjects));
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	public long getMaxObjects() {
+		return maxObjects;
+	}
+
+	public boolean isUnlimited() {
+		return timeoutMillis == 0 && maxObjects == 0;
+	}
+
+}
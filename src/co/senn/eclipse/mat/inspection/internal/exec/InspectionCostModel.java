@@ -0,0 +1,77 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.mat.snapshot.ISnapshot;
+
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+import co.senn.eclipse.mat.inspection.preferences.InspectionsPreferenceHelper;
+
+/**
+ * Predicts the wall time of each inspection from its previous runs, so that
+ * the slowest inspections can be started first. Costs are recorded per object
+ * of the inspected snapshot and kept in the preferences, so that predictions
+ * carry over to snapshots of other sizes.
+ */
+public final class InspectionCostModel {
+
+	// The weight of the latest run when it is averaged with the earlier runs
+	private static final double LATEST_WEIGHT = 0.5;
+
+	private final long objects;
+	private final Map<String, Double> recorded = new ConcurrentHashMap<>();
+
+	public InspectionCostModel(ISnapshot snapshot) {
+		this.objects = Math.max(1, snapshot.getSnapshotInfo().getNumberOfObjects());
+	}
+
+	/**
+	 * Returns the predicted wall time of the inspection on this snapshot, in
+	 * nanoseconds, or -1 if it has never been run.
+	 */
+	public long predict(InspectionSpec inspection) {
+		double cost = getCost(inspection.getId());
+		return cost < 0 ? -1 : (long) (cost * objects);
+	}
+
+	/**
+	 * Orders the specified inspections longest first. Inspections that have never
+	 * been run come first, since they may be the longest of all; otherwise, the
+	 * order is kept.
+	 */
+	public void sortLongestFirst(List<InspectionSpec> inspections) {
+		inspections.sort(Comparator.comparingLong((InspectionSpec i) -> {
+			long prediction = predict(i);
+			return prediction < 0 ? Long.MAX_VALUE : prediction;
+		}).reversed());
+	}
+
+	/**
+	 * Records the wall time of a run of the inspection on this snapshot.
+	 */
+	public void record(InspectionSpec inspection, InspectionMetrics metrics) {
+		double cost = (double) metrics.getWallTimeNanos() / objects;
+		recorded.compute(inspection.getId(), (id, previous) -> {
+			double earlier = previous != null ? previous : InspectionsPreferenceHelper.getInspectionCost(id);
+			return earlier < 0 ? cost : earlier * (1 - LATEST_WEIGHT) + cost * LATEST_WEIGHT;
+		});
+	}
+
+	/**
+	 * Saves the recorded costs to the preferences.
+	 */
+	public void save() {
+		if (!recorded.isEmpty()) {
+			InspectionsPreferenceHelper.setInspectionCosts(recorded);
+		}
+	}
+
+	private double getCost(String inspectionId) {
+		Double cost = recorded.get(inspectionId);
+		return cost != null ? cost : InspectionsPreferenceHelper.getInspectionCost(inspectionId);
+	}
+
+}
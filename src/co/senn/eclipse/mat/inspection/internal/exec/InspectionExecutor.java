@@ -0,0 +1,653 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.IProgressListener.OperationCanceledException;
+
+import co.senn.eclipse.mat.inspection.api.IInspection;
+import co.senn.eclipse.mat.inspection.api.IInspectionResult;
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.api.IScanInspection;
+import co.senn.eclipse.mat.inspection.api.LazyInspectionResult;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionOutcome.Status;
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+import co.senn.eclipse.mat.inspection.internal.spec.TechnologySpec;
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException;
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException.Kind;
+import co.senn.eclipse.mat.inspection.internal.util.CurrentFactStore;
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+import co.senn.eclipse.mat.inspection.util.FactStore;
+import co.senn.eclipse.mat.inspection.util.HeapScan;
+import co.senn.eclipse.mat.inspection.util.HeapScan.Subscription;
+
+/**
+ * Runs technology detection and inspections on a bounded pool of worker
+ * threads. Callers submit work in report order and collect the returned
+ * futures in that same order, so the report layout does not depend on which
+ * worker finishes first.
+ * <p>
+ * Each executor owns the {@link FactStore} of its report, which is bound to
+ * every worker, so inspections of one report share facts with each other but
+ * not with concurrent reports on the same snapshot.
+ */
+public final class InspectionExecutor implements AutoCloseable {
+
+	// Workers take detections first, then the heap scan and its verdicts, and then the inspections
+	private static final int PRIORITY_DETECTION = 0;
+	private static final int PRIORITY_SCAN = 1;
+	private static final int PRIORITY_INSPECTION = 2;
+
+	private final ISnapshot snapshot;
+	private final IProgressListener listener;
+	private final ExecutorService workers;
+	private final AtomicLong sequence = new AtomicLong();
+	private final ExecutorService saver;
+	private final InspectionResultStore store;
+	private final Consumer<InspectionOutcome> outcomeListener;
+	private final InspectionResultSeverity minimumSeverity;
+	private final InspectionCostModel costs;
+	private final boolean sizeSummaries;
+	private final FactStore facts;
+
+	/**
+	 * @param snapshot        The snapshot to be inspected
+	 * @param listener        A thread-safe listener; one unit of work is
+	 *                        reported for each detection and inspection
+	 * @param parallelism     The maximum number of concurrently executing tasks
+	 * @param store           The store from which results are reused and to
+	 *                        which they are saved, or null to always execute
+	 *                        inspections
+	 * @param outcomeListener A thread-safe consumer that is given each outcome as
+	 *                        soon as it is known, or null
+	 * @param minimumSeverity The lowest severity that is reported; inspections
+	 *                        whose verdict is below it are not executed
+	 * @param costs           The model by which inspections are ordered and to
+	 *                        which their wall time is recorded, or null to
+	 *                        execute inspections in the order given
+	 * @param sizeSummaries   Whether the summary of each outcome includes the
+	 *                        approximate retained size of the objects it found,
+	 *                        rather than only their number
+	 */
+	public InspectionExecutor(ISnapshot snapshot, IProgressListener listener, int parallelism,
+			InspectionResultStore store, Consumer<InspectionOutcome> outcomeListener,
+			InspectionResultSeverity minimumSeverity, InspectionCostModel costs, boolean sizeSummaries) {
+		this.snapshot = snapshot;
+		this.listener = listener;
+		this.store = store;
+		this.outcomeListener = outcomeListener;
+		this.minimumSeverity = minimumSeverity;
+		this.costs = costs;
+		this.sizeSummaries = sizeSummaries;
+		this.facts = new FactStore(snapshot);
+		this.workers = new ThreadPoolExecutor(Math.max(1, parallelism), Math.max(1, parallelism), 0L,
+				TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(), new WorkerThreadFactory(facts));
+		this.saver = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "Inspection Result Saver");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the facts shared by the inspections of this report.
+	 */
+	public FactStore getFacts() {
+		return facts;
+	}
+
+	public static int getDefaultParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns a future that yields whether the technology is present, or null if
+	 * detection was skipped due to cancellation.
+	 * 
+	 * @param technology The technology to be detected
+	 * @param cache      The cache from which earlier detections are reused and to
+	 *                   which this one is added, or null to always detect
+	 */
+	public Future<Boolean> detect(TechnologySpec technology, TechnologyDetectionCache cache) {
+		return submit(PRIORITY_DETECTION, () -> {
+			if (listener.isCanceled()) {
+				return null;
+			}
+
+			try {
+				listener.subTask("Detecting " + technology.getName());
+				return cache == null ? technology.getTechnology().isPresent(snapshot)
+						: cache.isPresent(technology, snapshot);
+			} finally {
+				listener.worked(1);
+			}
+		});
+	}
+
+	/**
+	 * Returns a future that yields the outcome of the inspection, which is
+	 * restored from the store if possible and executed otherwise.
+	 */
+	public Future<InspectionOutcome> execute(InspectionSpec inspection) {
+		return submit(PRIORITY_INSPECTION, () -> {
+			if (listener.isCanceled()) {
+				return finish(InspectionOutcome.skipped(inspection));
+			}
+
+			try {
+				IInspectionResult stored = store == null ? null : store.load(inspection);
+				if (stored != null) {
+					return finish(InspectionOutcome.restored(inspection, stored));
+				}
+
+				AtomicBoolean executed = new AtomicBoolean();
+				InspectionOutcome outcome = run(inspection, snapshot, listener, sizeSummaries, l -> {
+					IInspection implementation = inspection.getInspection();
+					if (!isReportable(implementation, snapshot, l, minimumSeverity)) {
+						return null;
+					}
+					executed.set(true);
+					return filter(implementation.execute(snapshot, l), minimumSeverity);
+				});
+				return finish(executed.get() ? outcome : outcome.asGated());
+			} finally {
+				listener.worked(1);
+			}
+		});
+	}
+
+	/**
+	 * Executes the specified inspections in a single {@link Batch}.
+	 */
+	public Map<InspectionSpec, Future<InspectionOutcome>> executeAll(Collection<InspectionSpec> inspections) {
+		try (Batch batch = begin()) {
+			return batch.add(inspections);
+		}
+	}
+
+	/**
+	 * Begins a batch of inspections that share a single heap scan, to which
+	 * inspections can be added as soon as their technology is detected.
+	 */
+	public Batch begin() {
+		return new Batch();
+	}
+
+	private <T> Future<T> submit(int priority, Callable<T> callable) {
+		FutureTask<T> task = new FutureTask<>(callable);
+		queue(priority).execute(task);
+		return task;
+	}
+
+	/**
+	 * Returns an executor that queues tasks on the workers at the specified
+	 * priority. Tasks of the same priority are started in the order queued.
+	 */
+	private Executor queue(int priority) {
+		return task -> workers.execute(new PrioritizedTask(task, priority, sequence.getAndIncrement()));
+	}
+
+	private static void await(Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			throw new CompletionException(e.getCause());
+		}
+	}
+
+	private static IScanInspection<?> asScanInspection(InspectionSpec inspection) {
+		try {
+			return inspection.getInspection() instanceof IScanInspection
+					? (IScanInspection<?>) inspection.getInspection()
+					: null;
+		} catch (IllegalStateException e) {
+			// Inspections that cannot be instantiated fail when executed
+			return null;
+		}
+	}
+
+	/**
+	 * Stores, records and publishes the outcome of an inspection, summarizing it
+	 * first if it was not executed. Outcomes are finished on the worker that
+	 * produced them.
+	 */
+	private InspectionOutcome finish(InspectionOutcome outcome) {
+		if (outcome.getStatus() != Status.SKIPPED && outcome.getSummary() == null) {
+			// Restored results are summarized within the inspection's budget, but not measured
+			InspectionBudget budget = InspectionBudget.of(outcome.getInspection());
+			VisitCounter.setBudget(budget.getMaxObjects(), budget.getTimeoutMillis());
+			try {
+				outcome = summarize(snapshot, outcome, new InspectionProgressListener(listener), sizeSummaries);
+			} finally {
+				VisitCounter.clearBudget();
+			}
+		}
+		if (store != null && outcome.getStatus() == Status.COMPLETED && !outcome.isRestored()) {
+			// Saving is left to a single thread, so that workers move on to the next inspection
+			InspectionOutcome saved = outcome;
+			try {
+				saver.execute(() -> store.save(saved.getInspection(), saved.getResult()));
+			} catch (RejectedExecutionException e) {
+				// The report has already been closed
+			}
+		}
+		// A gated inspection's cost is only that of its verdict, which says nothing about its next execution
+		if (costs != null && outcome.getMetrics() != null && !outcome.isRestored() && !outcome.isGated()
+				&& (outcome.getStatus() == Status.COMPLETED || outcome.getStatus() == Status.TIMED_OUT)) {
+			costs.record(outcome.getInspection(), outcome.getMetrics());
+		}
+		if (outcomeListener != null) {
+			outcomeListener.accept(outcome);
+		}
+		return outcome;
+	}
+
+	/**
+	 * Stops the workers and waits for pending results to be saved, which still
+	 * read the snapshot.
+	 */
+	@Override
+	public void close() {
+		workers.shutdownNow();
+		saver.shutdown();
+		try {
+			saver.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			saver.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs and summarizes a single inspection on the current thread within its
+	 * budget, measuring its cost.
+	 */
+	private static InspectionOutcome run(InspectionSpec inspection, ISnapshot snapshot, IProgressListener listener,
+			boolean sizeSummaries, InspectionCall call) {
+		InspectionBudget budget = InspectionBudget.of(inspection);
+		InspectionProgressListener inspectionListener = new InspectionProgressListener(listener,
+				budget.getTimeoutMillis());
+
+		listener.subTask("Inspecting " + inspection.getName());
+		InspectionMetrics.Recorder recorder = InspectionMetrics.record();
+		VisitCounter.setBudget(budget.getMaxObjects(), budget.getTimeoutMillis());
+
+		InspectionOutcome outcome;
+		try {
+			IInspectionResult result = call.call(inspectionListener);
+			if (result instanceof LazyInspectionResult) {
+				// Details that will be reported are created here, within the budget, rather than on the report thread
+				result.getResult();
+			}
+			outcome = InspectionOutcome.completed(inspection, result);
+		} catch (BudgetExceededException e) {
+			outcome = InspectionOutcome.timedOut(inspection, e);
+		} catch (OperationCanceledException e) {
+			outcome = InspectionOutcome.skipped(inspection);
+		} catch (Throwable t) {
+			outcome = InspectionOutcome.failed(inspection, t);
+		}
+
+		// An inspection that stopped because its listener timed out may have returned a partial result
+		if (inspectionListener.isTimedOut() && outcome.getStatus() != Status.TIMED_OUT) {
+			outcome = InspectionOutcome.timedOut(inspection, new BudgetExceededException(Kind.TIME,
+					"Exceeded the time budget of " + inspectionListener.getTimeoutMillis() + " ms"));
+		}
+
+		// The summary counts against the inspection's budget and is included in its metrics
+		try {
+			if (outcome.getStatus() != Status.SKIPPED) {
+				outcome = summarize(snapshot, outcome, inspectionListener, sizeSummaries);
+			}
+		} finally {
+			VisitCounter.clearBudget();
+		}
+
+		return outcome.getStatus() == Status.SKIPPED ? outcome : outcome.withMetrics(recorder.stop());
+	}
+
+	private static InspectionOutcome summarize(ISnapshot snapshot, InspectionOutcome outcome,
+			IProgressListener listener, boolean sized) {
+		return outcome.withSummary(InspectionSummary.of(snapshot, outcome, sized, listener));
+	}
+
+	/**
+	 * Returns whether the inspection could report a result at or above the
+	 * minimum severity, asking it for its verdict if necessary.
+	 */
+	private static boolean isReportable(IInspection inspection, ISnapshot snapshot, IProgressListener listener,
+			InspectionResultSeverity minimumSeverity) throws Exception {
+		if (inspection.getMaximumSeverity().compareTo(minimumSeverity) < 0) {
+			return false;
+		}
+
+		InspectionResultSeverity verdict = inspection.getVerdict(snapshot, listener);
+		return verdict != null && verdict.compareTo(minimumSeverity) >= 0;
+	}
+
+	/**
+	 * Discards a result below the minimum severity. Failures are always kept.
+	 */
+	private static IInspectionResult filter(IInspectionResult result, InspectionResultSeverity minimumSeverity) {
+		if (result != null && result.getSeverity() != InspectionResultSeverity.FAILURE
+				&& result.getSeverity().compareTo(minimumSeverity) < 0) {
+			return null;
+		}
+		return result;
+	}
+
+	@FunctionalInterface
+	private static interface InspectionCall {
+		IInspectionResult call(IProgressListener listener) throws Exception;
+	}
+
+	private static final class ScanParticipant<S> {
+
+		private final InspectionSpec inspection;
+		private final IScanInspection<S> scanInspection;
+		private final List<Subscription> subscriptions = new ArrayList<>();
+		private S state;
+		private IInspectionResult restored;
+		private Throwable failure;
+		private boolean reportable = true;
+
+		private ScanParticipant(InspectionSpec inspection, IScanInspection<S> scanInspection) {
+			this.inspection = inspection;
+			this.scanInspection = scanInspection;
+		}
+
+		private static <S> ScanParticipant<S> of(InspectionSpec inspection, IScanInspection<S> scanInspection) {
+			return new ScanParticipant<>(inspection, scanInspection);
+		}
+
+		/**
+		 * Restores the inspection's result from the store, or otherwise takes its
+		 * verdict within its budget. A verdict that exceeds the budget times the
+		 * inspection out.
+		 */
+		private void judge(ISnapshot snapshot, IProgressListener listener, InspectionResultSeverity minimumSeverity,
+				InspectionResultStore store) {
+			restored = store == null ? null : store.load(inspection);
+			if (restored != null) {
+				return;
+			}
+
+			InspectionBudget budget = InspectionBudget.of(inspection);
+			InspectionProgressListener verdictListener = new InspectionProgressListener(listener,
+					budget.getTimeoutMillis());
+			VisitCounter.setBudget(budget.getMaxObjects(), budget.getTimeoutMillis());
+			try {
+				reportable = isReportable(scanInspection, snapshot, verdictListener, minimumSeverity);
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				VisitCounter.clearBudget();
+			}
+
+			if (verdictListener.isTimedOut() && !(failure instanceof BudgetExceededException)) {
+				failure = new BudgetExceededException(Kind.TIME,
+						"Exceeded the time budget of " + verdictListener.getTimeoutMillis() + " ms");
+			}
+		}
+
+		private void subscribe(ISnapshot snapshot, HeapScan scan) {
+			if (restored != null || failure != null || !reportable) {
+				return;
+			}
+
+			int from = scan.getSubscriptions().size();
+			try {
+				state = scanInspection.subscribe(snapshot, scan);
+			} catch (Throwable t) {
+				failure = t;
+			}
+
+			// Failed subscribers are still attached to the scan, but their results are discarded
+			subscriptions.addAll(scan.getSubscriptions().subList(from, scan.getSubscriptions().size()));
+
+			// The callbacks of each subscription have the inspection's budget, as its verdict and completion do
+			InspectionBudget budget = InspectionBudget.of(inspection);
+			for (Subscription subscription : subscriptions) {
+				subscription.limit(budget.getMaxObjects(), budget.getTimeoutMillis());
+			}
+		}
+
+		private InspectionOutcome complete(ISnapshot snapshot, IProgressListener listener, Throwable scanFailure,
+				InspectionResultSeverity minimumSeverity, boolean sizeSummaries) {
+			try {
+				if (restored != null) {
+					return InspectionOutcome.restored(inspection, restored);
+				}
+
+				Throwable cause = scanFailure instanceof CompletionException ? scanFailure.getCause() : scanFailure;
+				if (listener.isCanceled() || cause instanceof OperationCanceledException) {
+					return InspectionOutcome.skipped(inspection);
+				}
+				if (cause != null) {
+					return InspectionOutcome.failed(inspection, cause);
+				}
+				if (failure instanceof BudgetExceededException) {
+					return InspectionOutcome.timedOut(inspection, failure);
+				}
+				if (failure != null) {
+					return InspectionOutcome.failed(inspection, failure);
+				}
+				if (!reportable) {
+					return InspectionOutcome.completed(inspection, null).asGated();
+				}
+				for (Subscription subscription : subscriptions) {
+					// Subscriptions that are canceled or over budget end the same way as an executed inspection
+					Exception subscriptionFailure = subscription.getFailure();
+					if (subscriptionFailure instanceof BudgetExceededException) {
+						return InspectionOutcome.timedOut(inspection, subscriptionFailure);
+					}
+					if (subscriptionFailure instanceof OperationCanceledException) {
+						return InspectionOutcome.skipped(inspection);
+					}
+					if (subscriptionFailure != null) {
+						return InspectionOutcome.failed(inspection, subscriptionFailure);
+					}
+				}
+
+				// Only the completion is measured and budgeted; the scan itself is shared by all participants
+				return run(inspection, snapshot, listener, sizeSummaries,
+						l -> filter(scanInspection.complete(snapshot, state, l), minimumSeverity));
+			} finally {
+				listener.worked(1);
+			}
+		}
+
+	}
+
+	/**
+	 * A set of inspections that are executed together. Inspections with a stored
+	 * result are not executed at all; stored results are loaded on the workers.
+	 * Inspections implementing {@link IScanInspection} subscribe to one
+	 * {@link HeapScan}, which is run once on a worker after the batch is closed
+	 * and before their results are completed; all other inspections are queued as
+	 * soon as they are added.
+	 * <p>
+	 * The heap scan, which visits the whole heap, is started ahead of any
+	 * inspection that is still queued. The other inspections of each addition are
+	 * started longest first if there is a cost model, so that the slowest ones do
+	 * not start last and delay the whole report.
+	 */
+	public final class Batch implements AutoCloseable {
+
+		private final List<ScanParticipant<?>> participants = new ArrayList<>();
+		private final List<FutureTask<Void>> verdicts = new ArrayList<>();
+		private final CompletableFuture<Void> sweep = new CompletableFuture<>();
+		private boolean closed;
+
+		private Batch() {
+		}
+
+		/**
+		 * Queues the specified inspections, and returns a future of each outcome.
+		 * The outcomes of scan inspections are only known once the batch is closed.
+		 */
+		public Map<InspectionSpec, Future<InspectionOutcome>> add(Collection<InspectionSpec> inspections) {
+			if (closed) {
+				throw new IllegalStateException("The batch has already been closed");
+			}
+
+			Map<InspectionSpec, Future<InspectionOutcome>> outcomes = new HashMap<>();
+			List<InspectionSpec> independent = new ArrayList<>();
+			for (InspectionSpec inspection : inspections) {
+				IScanInspection<?> scanInspection = asScanInspection(inspection);
+				if (scanInspection == null) {
+					independent.add(inspection);
+					continue;
+				}
+
+				// Verdicts are taken concurrently, each within its inspection's budget, before the scan is started
+				ScanParticipant<?> participant = ScanParticipant.of(inspection, scanInspection);
+				FutureTask<Void> verdict = new FutureTask<>(
+						() -> participant.judge(snapshot, listener, minimumSeverity, store), null);
+				queue(PRIORITY_SCAN).execute(verdict);
+				participants.add(participant);
+				verdicts.add(verdict);
+
+				outcomes.put(inspection, sweep.handle((v, t) -> t).thenApplyAsync(
+						t -> finish(participant.complete(snapshot, listener, t, minimumSeverity, sizeSummaries)),
+						queue(PRIORITY_INSPECTION)));
+			}
+
+			if (costs != null) {
+				costs.sortLongestFirst(independent);
+			}
+			for (InspectionSpec inspection : independent) {
+				outcomes.put(inspection, execute(inspection));
+			}
+
+			return outcomes;
+		}
+
+		/**
+		 * Queues the heap scan of the scan inspections that were added, if any.
+		 */
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+
+			if (participants.isEmpty()) {
+				sweep.complete(null);
+				return;
+			}
+
+			try {
+				queue(PRIORITY_SCAN).execute(() -> {
+					try {
+						scan();
+						sweep.complete(null);
+					} catch (Throwable t) {
+						sweep.completeExceptionally(t);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				sweep.completeExceptionally(new OperationCanceledException());
+			}
+		}
+
+		private void scan() throws SnapshotException {
+			for (FutureTask<Void> verdict : verdicts) {
+				// A verdict that no worker has started yet is taken here rather than waited for
+				verdict.run();
+				await(verdict);
+			}
+			if (listener.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+
+			HeapScan scan = new HeapScan(snapshot);
+			for (ScanParticipant<?> participant : participants) {
+				participant.subscribe(snapshot, scan);
+			}
+
+			listener.subTask("Scanning heap for " + participants.size() + " inspections");
+			scan.run(new InspectionProgressListener(listener));
+		}
+
+	}
+
+	private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+		private final Runnable task;
+		private final int priority;
+		private final long sequence;
+
+		private PrioritizedTask(Runnable task, int priority, long sequence) {
+			this.task = task;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+
+		@Override
+		public int compareTo(PrioritizedTask other) {
+			int result = Integer.compare(priority, other.priority);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final FactStore facts;
+
+		private WorkerThreadFactory(FactStore facts) {
+			this.facts = facts;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(() -> {
+				CurrentFactStore.set(facts);
+				try {
+					runnable.run();
+				} finally {
+					CurrentFactStore.clear();
+				}
+			}, "Inspection Worker " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,197 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.IResultTable;
+import org.eclipse.mat.query.results.TextResult;
+
+import co.senn.eclipse.mat.inspection.api.IInspectionResult;
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+import co.senn.eclipse.mat.inspection.internal.util.JsonUtil;
+
+/**
+ * Writes one JSON record per line for each inspection outcome it is given, as
+ * soon as it is given, so that findings can be consumed while the report is
+ * still running. Outcomes are handed to a single writer thread, so workers do
+ * not wait for each other's records to be written. Table rows are written
+ * straight from the result, without being copied, up to a limit per record.
+ */
+public final class InspectionJsonLinesWriter implements Consumer<InspectionOutcome>, Closeable {
+
+	// Tables with more rows are truncated; the full table is still in the report
+	private static final int MAX_ROWS = 10_000;
+
+	private final Writer out;
+	private final ExecutorService writer;
+	private volatile IOException failure;
+
+	public InspectionJsonLinesWriter(Writer out) {
+		this.out = out;
+		this.writer = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "Inspection Findings Writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public static InspectionJsonLinesWriter open(File file) throws IOException {
+		return new InspectionJsonLinesWriter(
+				new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Queues the record of the specified outcome to be written. Once writing has
+	 * failed, further records are ignored and the failure is reported by
+	 * {@link #checkError()}.
+	 */
+	@Override
+	public void accept(InspectionOutcome outcome) {
+		try {
+			writer.execute(() -> {
+				if (failure != null) {
+					return;
+				}
+
+				try {
+					write(outcome);
+					out.write('\n');
+					out.flush();
+				} catch (IOException e) {
+					failure = e;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The writer has already been closed
+		}
+	}
+
+	/**
+	 * Waits for the records queued so far to be written.
+	 * 
+	 * @throws IOException If any record could not be written
+	 */
+	public void checkError() throws IOException {
+		try {
+			writer.submit(() -> {
+			}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writes the records queued so far and closes the output.
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			writer.shutdownNow();
+			Thread.currentThread().interrupt();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void write(InspectionOutcome outcome) throws IOException {
+		InspectionSpec inspection = outcome.getInspection();
+		out.write("{\"technology\": ");
+		out.write(JsonUtil.quote(inspection.getTechnology() == null ? null : inspection.getTechnology().getId()));
+		out.write(", \"inspection\": ");
+		out.write(JsonUtil.quote(inspection.getId()));
+		out.write(", \"name\": ");
+		out.write(JsonUtil.quote(inspection.getName()));
+		out.write(", \"status\": ");
+		out.write(JsonUtil.quote(outcome.getStatus().name()));
+		if (outcome.getFailure() != null) {
+			out.write(", \"failure\": ");
+			out.write(JsonUtil.quote(String.valueOf(outcome.getFailure().getMessage())));
+		}
+
+		IInspectionResult result = outcome.getResult();
+		if (result != null) {
+			out.write(", \"severity\": ");
+			out.write(JsonUtil.quote(result.getSeverity().name()));
+			out.write(", \"summary\": ");
+			out.write(JsonUtil.quote(result.getResultSummary()));
+
+			IResult details;
+			try {
+				details = result.getResult();
+			} catch (RuntimeException e) {
+				// Lazily created results may fail only now
+				out.write(", \"failure\": ");
+				out.write(JsonUtil.quote(String.valueOf(e.getMessage())));
+				details = null;
+			}
+			write(details);
+		}
+		out.write('}');
+	}
+
+	private void write(IResult result) throws IOException {
+		if (result instanceof TextResult) {
+			out.write(", \"text\": ");
+			out.write(JsonUtil.quote(((TextResult) result).getText()));
+		} else if (result instanceof IResultTable) {
+			IResultTable table = (IResultTable) result;
+			Column[] columns = table.getColumns();
+
+			out.write(", \"columns\": [");
+			for (int c = 0; c < columns.length; c++) {
+				out.write(c == 0 ? "" : ", ");
+				out.write(JsonUtil.quote(columns[c].getLabel()));
+			}
+
+			int rows = Math.min(table.getRowCount(), MAX_ROWS);
+			out.write("], \"rowCount\": ");
+			out.write(Integer.toString(table.getRowCount()));
+			out.write(", \"rows\": [");
+			for (int i = 0; i < rows; i++) {
+				Object row = table.getRow(i);
+				IContextObject context = table.getContext(row);
+
+				out.write(i == 0 ? "{\"objectId\": " : ", {\"objectId\": ");
+				out.write(context == null ? "null" : Integer.toString(context.getObjectId()));
+				out.write(", \"values\": [");
+				for (int c = 0; c < columns.length; c++) {
+					out.write(c == 0 ? "" : ", ");
+					out.write(JsonUtil.value(table.getColumnValue(row, c)));
+				}
+				out.write("]}");
+			}
+			out.write(']');
+		} else if (result != null) {
+			// Other result types, such as trees, are only available in the report
+			out.write(", \"resultType\": ");
+			out.write(JsonUtil.quote(result.getClass().getName()));
+		}
+	}
+
+}
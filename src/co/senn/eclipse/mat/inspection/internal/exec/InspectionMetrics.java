@@ -0,0 +1,146 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+
+/**
+ * The cost of executing a single inspection, measured on the worker thread that
+ * executed it. Values that the running JVM cannot measure are reported as -1.
+ */
+public final class InspectionMetrics {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	// Thread allocation counters are a HotSpot extension, so they are looked up reflectively
+	private static final Method ALLOCATED_BYTES = findAllocatedBytesMethod();
+	private static final Method TOTAL_ALLOCATED_BYTES = findTotalAllocatedBytesMethod();
+
+	private final long wallTimeNanos;
+	private final long cpuTimeNanos;
+	private final long allocatedBytes;
+	private final long objectsVisited;
+
+	private InspectionMetrics(long wallTimeNanos, long cpuTimeNanos, long allocatedBytes, long objectsVisited) {
+		this.wallTimeNanos = wallTimeNanos;
+		this.cpuTimeNanos = cpuTimeNanos;
+		this.allocatedBytes = allocatedBytes;
+		this.objectsVisited = objectsVisited;
+	}
+
+	/**
+	 * Starts measuring the current thread.
+	 */
+	public static Recorder record() {
+		return new Recorder();
+	}
+
+	public long getWallTimeNanos() {
+		return wallTimeNanos;
+	}
+
+	public long getCpuTimeNanos() {
+		return cpuTimeNanos;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public long getObjectsVisited() {
+		return objectsVisited;
+	}
+
+	/**
+	 * Returns the bytes allocated by all threads of the JVM, including threads
+	 * that have ended, or -1 if the running JVM cannot measure them.
+	 */
+	public static long getTotalAllocatedBytes() {
+		if (TOTAL_ALLOCATED_BYTES == null) {
+			return -1;
+		}
+
+		try {
+			return (Long) TOTAL_ALLOCATED_BYTES.invoke(THREADS);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the bytes allocated by the current thread, or -1 if the running JVM
+	 * cannot measure them.
+	 */
+	public static long getCurrentAllocatedBytes() {
+		return currentAllocatedBytes();
+	}
+
+	private static long currentCpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long currentAllocatedBytes() {
+		if (ALLOCATED_BYTES == null) {
+			return -1;
+		}
+
+		try {
+			return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return -1;
+		}
+	}
+
+	private static Method findAllocatedBytesMethod() {
+		try {
+			Class<?> type = Class.forName("com.sun.management.ThreadMXBean", false,
+					ClassLoader.getSystemClassLoader());
+			return type.isInstance(THREADS) ? type.getMethod("getThreadAllocatedBytes", long.class) : null;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	// Only available from Java 21
+	private static Method findTotalAllocatedBytesMethod() {
+		try {
+			Class<?> type = Class.forName("com.sun.management.ThreadMXBean", false,
+					ClassLoader.getSystemClassLoader());
+			return type.isInstance(THREADS) ? type.getMethod("getTotalThreadAllocatedBytes") : null;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	public static final class Recorder {
+
+		private final long wallTime = System.nanoTime();
+		private final long cpuTime = currentCpuTime();
+		private final long allocatedBytes = currentAllocatedBytes();
+		private final long objectsVisited = VisitCounter.get();
+
+		private Recorder() {
+		}
+
+		/**
+		 * Stops measuring; must be called on the thread that started the recorder.
+		 */
+		public InspectionMetrics stop() {
+			long cpuTimeNow = cpuTime < 0 ? -1 : currentCpuTime();
+			long allocatedBytesNow = allocatedBytes < 0 ? -1 : currentAllocatedBytes();
+
+			// @formatter:off
+			return new InspectionMetrics(
+					System.nanoTime() - wallTime,
+					cpuTimeNow < 0 ? -1 : cpuTimeNow - cpuTime,
+					allocatedBytesNow < 0 ? -1 : allocatedBytesNow - allocatedBytes,
+					VisitCounter.get() - objectsVisited
+			);
+			// @formatter:on
+		}
+
+	}
+
+}
@@ -0,0 +1,116 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import co.senn.eclipse.mat.inspection.api.IInspectionResult;
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+
+public final class InspectionOutcome {
+
+	public enum Status {
+		COMPLETED, FAILED, TIMED_OUT, SKIPPED
+	}
+
+	private final InspectionSpec inspection;
+	private final Status status;
+	private final IInspectionResult result;
+	private final Throwable failure;
+	private final InspectionMetrics metrics;
+	private final boolean restored;
+	private final boolean gated;
+	private final InspectionSummary summary;
+
+	private InspectionOutcome(InspectionSpec inspection, Status status, IInspectionResult result, Throwable failure,
+			InspectionMetrics metrics, boolean restored, boolean gated, InspectionSummary summary) {
+		this.inspection = inspection;
+		this.status = status;
+		this.result = result;
+		this.failure = failure;
+		this.metrics = metrics;
+		this.restored = restored;
+		this.gated = gated;
+		this.summary = summary;
+	}
+
+	public static InspectionOutcome completed(InspectionSpec inspection, IInspectionResult result) {
+		return new InspectionOutcome(inspection, Status.COMPLETED, result, null, null, false, false, null);
+	}
+
+	/**
+	 * Returns a completed outcome whose result was read from an
+	 * {@link InspectionResultStore} rather than produced by executing the
+	 * inspection.
+	 */
+	public static InspectionOutcome restored(InspectionSpec inspection, IInspectionResult result) {
+		return new InspectionOutcome(inspection, Status.COMPLETED, result, null, null, true, false, null);
+	}
+
+	public static InspectionOutcome failed(InspectionSpec inspection, Throwable failure) {
+		return new InspectionOutcome(inspection, Status.FAILED, null, failure, null, false, false, null);
+	}
+
+	public static InspectionOutcome timedOut(InspectionSpec inspection, Throwable failure) {
+		return new InspectionOutcome(inspection, Status.TIMED_OUT, null, failure, null, false, false, null);
+	}
+
+	public static InspectionOutcome skipped(InspectionSpec inspection) {
+		return new InspectionOutcome(inspection, Status.SKIPPED, null, null, null, false, false, null);
+	}
+
+	public InspectionOutcome withMetrics(InspectionMetrics metrics) {
+		return new InspectionOutcome(inspection, status, result, failure, metrics, restored, gated, summary);
+	}
+
+	/**
+	 * Returns this outcome, marked as having ended at the inspection's verdict
+	 * without the inspection being executed.
+	 */
+	public InspectionOutcome asGated() {
+		return new InspectionOutcome(inspection, status, result, failure, metrics, restored, true, summary);
+	}
+
+	public InspectionOutcome withSummary(InspectionSummary summary) {
+		return new InspectionOutcome(inspection, status, result, failure, metrics, restored, gated, summary);
+	}
+
+	public InspectionSpec getInspection() {
+		return inspection;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public IInspectionResult getResult() {
+		return result;
+	}
+
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * Returns the cost of the inspection, or null if it was skipped or restored.
+	 */
+	public InspectionMetrics getMetrics() {
+		return metrics;
+	}
+
+	public boolean isRestored() {
+		return restored;
+	}
+
+	/**
+	 * Returns whether the inspection was not executed because of its maximum
+	 * severity or verdict. Its metrics, if any, are those of the verdict alone.
+	 */
+	public boolean isGated() {
+		return gated;
+	}
+
+	/**
+	 * Returns the summary of the outcome, or null if the inspection was skipped.
+	 */
+	public InspectionSummary getSummary() {
+		return summary;
+	}
+
+}
@@ -0,0 +1,78 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * The listener handed to a single inspection. Inspections run concurrently and
+ * share the report's progress bar, so their own task accounting is dropped and
+ * the executor reports one unit of work per inspection instead.
+ * <p>
+ * If the inspection has a time budget, the listener also reports itself as
+ * canceled once the budget has been used up, which stops inspections that poll
+ * for cancellation without affecting the rest of the report.
+ */
+public final class InspectionProgressListener implements IProgressListener {
+
+	private final IProgressListener delegate;
+	private final long timeoutMillis;
+	private final long deadline;
+	private volatile boolean timedOut;
+
+	public InspectionProgressListener(IProgressListener delegate) {
+		this(delegate, 0);
+	}
+
+	public InspectionProgressListener(IProgressListener delegate, long timeoutMillis) {
+		this.delegate = delegate;
+		this.timeoutMillis = timeoutMillis;
+		this.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+	}
+
+	/**
+	 * Returns a boolean indicating whether the time budget was found to be
+	 * exhausted when the inspection last checked for cancellation.
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	@Override
+	public void beginTask(String name, int totalWork) {
+	}
+
+	@Override
+	public void done() {
+	}
+
+	@Override
+	public boolean isCanceled() {
+		if (timeoutMillis > 0 && !timedOut && System.nanoTime() - deadline > 0) {
+			timedOut = true;
+		}
+		return timedOut || delegate.isCanceled();
+	}
+
+	@Override
+	public void setCanceled(boolean value) {
+		delegate.setCanceled(value);
+	}
+
+	@Override
+	public void subTask(String name) {
+		delegate.subTask(name);
+	}
+
+	@Override
+	public void worked(int work) {
+	}
+
+	@Override
+	public void sendUserMessage(Severity severity, String message, Throwable exception) {
+		delegate.sendUserMessage(severity, message, exception);
+	}
+
+}
@@ -0,0 +1,128 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.IResultTable;
+import org.eclipse.mat.query.IResultTree;
+import org.eclipse.mat.query.IStructuredResult;
+import org.eclipse.mat.query.results.TextResult;
+import org.eclipse.mat.report.QuerySpec;
+import org.eclipse.mat.report.SectionSpec;
+import org.eclipse.mat.report.Spec;
+
+import co.senn.eclipse.mat.inspection.util.ObjectIdSet;
+
+/**
+ * Writes an inspection report as indented plain text, for reading outside of
+ * Memory Analyzer. Tables are written as tab-separated rows and trees are
+ * indented by depth. Trees are written to a limited depth, and the children of
+ * an object are only written the first time it appears, since the trees of
+ * reference chains may be cyclic.
+ */
+public final class InspectionReportWriter {
+
+	private static final String INDENT = "  ";
+	private static final int MAX_TREE_DEPTH = 16;
+
+	private final Writer out;
+
+	public InspectionReportWriter(Writer out) {
+		this.out = out;
+	}
+
+	public void write(Spec spec) throws IOException {
+		write(spec, 0);
+	}
+
+	private void write(Spec spec, int depth) throws IOException {
+		line(depth, spec.getName());
+		if (spec instanceof SectionSpec) {
+			for (Spec child : ((SectionSpec) spec).getChildren()) {
+				write(child, depth + 1);
+			}
+		} else if (spec instanceof QuerySpec) {
+			write(((QuerySpec) spec).getResult(), depth + 1);
+		}
+	}
+
+	private void write(IResult result, int depth) throws IOException {
+		if (result == null) {
+			return;
+		}
+
+		if (result instanceof Spec) {
+			write((Spec) result, depth);
+		} else if (result instanceof TextResult) {
+			for (String line : ((TextResult) result).getText().split("\r?\n")) {
+				line(depth, line);
+			}
+		} else if (result instanceof IResultTable) {
+			IResultTable table = (IResultTable) result;
+			line(depth, header(table.getColumns()));
+			for (int i = 0; i < table.getRowCount(); i++) {
+				line(depth, row(table.getColumns(), table, table.getRow(i)));
+			}
+		} else if (result instanceof IResultTree) {
+			IResultTree tree = (IResultTree) result;
+			line(depth, header(tree.getColumns()));
+			write(tree, tree.getElements(), depth, 0, new ObjectIdSet());
+		} else {
+			line(depth, "(" + result.getClass().getSimpleName() + " results cannot be exported)");
+		}
+		out.write(System.lineSeparator());
+	}
+
+	private void write(IResultTree tree, List<?> elements, int depth, int level, ObjectIdSet expanded)
+			throws IOException {
+		if (elements == null) {
+			return;
+		}
+
+		for (Object element : elements) {
+			line(depth, row(tree.getColumns(), tree, element));
+			if (!tree.hasChildren(element)) {
+				continue;
+			}
+
+			IContextObject context = tree.getContext(element);
+			if (level + 1 >= MAX_TREE_DEPTH) {
+				line(depth + 1, "(deeper levels are not exported)");
+			} else if (context != null && context.getObjectId() >= 0 && !expanded.add(context.getObjectId())) {
+				line(depth + 1, "(already expanded above)");
+			} else {
+				write(tree, tree.getChildren(element), depth + 1, level + 1, expanded);
+			}
+		}
+	}
+
+	private static String header(Column[] columns) {
+		StringBuilder sb = new StringBuilder();
+		for (int c = 0; c < columns.length; c++) {
+			sb.append(c == 0 ? "" : "\t").append(columns[c].getLabel());
+		}
+		return sb.toString();
+	}
+
+	private static String row(Column[] columns, IStructuredResult result, Object row) {
+		StringBuilder sb = new StringBuilder();
+		for (int c = 0; c < columns.length; c++) {
+			Object value = result.getColumnValue(row, c);
+			sb.append(c == 0 ? "" : "\t").append(value == null ? "" : String.valueOf(value).replace('\n', ' '));
+		}
+		return sb.toString();
+	}
+
+	private void line(int depth, String text) throws IOException {
+		for (int i = 0; i < depth; i++) {
+			out.write(INDENT);
+		}
+		out.write(text == null ? "" : text);
+		out.write(System.lineSeparator());
+	}
+
+}
@@ -0,0 +1,392 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.Column.Alignment;
+import org.eclipse.mat.query.Column.SortDirection;
+import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.IResultTable;
+import org.eclipse.mat.query.results.TextResult;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotInfo;
+
+import co.senn.eclipse.mat.inspection.api.IInspectionResult;
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.api.LazyInspectionResult;
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+
+/**
+ * Keeps the results of completed inspections next to the snapshot's index
+ * files, one compressed file per inspection, so that reopening the same dump
+ * does not repeat them.
+ * <p>
+ * A stored result is only reused for the same parse of the dump, the same
+ * version of the inspection and the same minimum severity. Text and tables
+ * that can be restored exactly are stored: tables of plain values, whose
+ * columns use no formatting beyond their alignment, sorting and totals, and
+ * which have no metadata. Inspections whose results are of any other type, or
+ * are created lazily, are simply executed every time.
+ */
+public final class InspectionResultStore {
+
+	private static final int MAGIC = 0x494E5352;
+	private static final int FORMAT_VERSION = 3;
+	private static final String DIRECTORY_SUFFIX = "inspection.results";
+
+	private static final byte RESULT_NONE = 0;
+	private static final byte RESULT_TABLE = 1;
+	private static final byte RESULT_TEXT = 2;
+
+	private static final byte VALUE_NULL = 0;
+	private static final byte VALUE_STRING = 1;
+	private static final byte VALUE_LONG = 2;
+	private static final byte VALUE_DOUBLE = 3;
+	private static final byte VALUE_BOOLEAN = 4;
+	private static final byte VALUE_INTEGER = 5;
+	private static final byte VALUE_SHORT = 6;
+	private static final byte VALUE_BYTE = 7;
+	private static final byte VALUE_FLOAT = 8;
+	private static final byte VALUE_CHARACTER = 9;
+
+	// Column types that are restored as themselves
+	private static final Map<String, Class<?>> COLUMN_TYPES = new HashMap<>();
+	static {
+		for (Class<?> type : Arrays.asList(String.class, Long.class, Integer.class, Short.class, Byte.class,
+				Double.class, Float.class, Boolean.class, Character.class, long.class, int.class, short.class,
+				byte.class, double.class, float.class, boolean.class, char.class)) {
+			COLUMN_TYPES.put(type.getName(), type);
+		}
+	}
+
+	private final File directory;
+	private final int snapshotObjects;
+	private final long snapshotHeapSize;
+	private final InspectionResultSeverity minimumSeverity;
+
+	/**
+	 * @param snapshot        The snapshot whose results are stored
+	 * @param minimumSeverity The minimum severity of the report, since results
+	 *                        below it are discarded before they are stored
+	 */
+	public InspectionResultStore(ISnapshot snapshot, InspectionResultSeverity minimumSeverity) {
+		SnapshotInfo info = snapshot.getSnapshotInfo();
+		this.directory = info.getPrefix() == null ? null : new File(info.getPrefix() + DIRECTORY_SUFFIX);
+		this.snapshotObjects = info.getNumberOfObjects();
+		this.snapshotHeapSize = info.getUsedHeapSize();
+		this.minimumSeverity = minimumSeverity;
+	}
+
+	/**
+	 * Returns the stored result of the specified inspection, or null if there is
+	 * no usable result.
+	 */
+	public IInspectionResult load(InspectionSpec inspection) {
+		File file = getFile(inspection);
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+			if (!readHeader(in, inspection)) {
+				return null;
+			}
+
+			InspectionResultSeverity severity = InspectionResultSeverity.valueOf(in.readUTF());
+			String summary = in.readBoolean() ? in.readUTF() : null;
+			return new StoredInspectionResult(summary, readResult(in), severity);
+		} catch (IOException | RuntimeException e) {
+			// A damaged or incompatible file is treated the same as a missing one
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the result of the specified inspection, if its type can be stored.
+	 * Failures are not stored, so that failed inspections are retried.
+	 */
+	public void save(InspectionSpec inspection, IInspectionResult result) {
+		File file = getFile(inspection);
+		if (file == null || result == null || result.getSeverity() == InspectionResultSeverity.FAILURE
+				|| result instanceof LazyInspectionResult) {
+			// Storing a lazy result would create every row that the report may never show
+			return;
+		}
+
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			if (!isStorable(result.getResult()) || !directory.isDirectory() && !directory.mkdirs()) {
+				return;
+			}
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+				writeHeader(out, inspection);
+				out.writeUTF(result.getSeverity().name());
+				writeNullableUTF(out, result.getResultSummary());
+				writeResult(out, result.getResult());
+			}
+
+			// Replace the file only once it is complete, so a concurrent reader never sees half of it
+			if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+				temp.delete();
+			}
+		} catch (IOException | RuntimeException e) {
+			// The store is only an optimization; the inspection will simply be executed next time
+			temp.delete();
+		}
+	}
+
+	private File getFile(InspectionSpec inspection) {
+		if (directory == null) {
+			return null;
+		}
+		return new File(directory, inspection.getId().replaceAll("[^A-Za-z0-9._-]", "_") + ".bin");
+	}
+
+	private void writeHeader(DataOutputStream out, InspectionSpec inspection) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeInt(snapshotObjects);
+		out.writeLong(snapshotHeapSize);
+		out.writeUTF(inspection.getId());
+		out.writeUTF(inspection.getVersion());
+		out.writeUTF(minimumSeverity.name());
+	}
+
+	private boolean readHeader(DataInputStream in, InspectionSpec inspection) throws IOException {
+		// @formatter:off
+		return in.readInt() == MAGIC
+				&& in.readInt() == FORMAT_VERSION
+				&& in.readInt() == snapshotObjects
+				&& in.readLong() == snapshotHeapSize
+				&& in.readUTF().equals(inspection.getId())
+				&& in.readUTF().equals(inspection.getVersion())
+				&& in.readUTF().equals(minimumSeverity.name());
+		// @formatter:on
+	}
+
+	private static boolean isStorable(IResult result) {
+		if (result == null || result instanceof TextResult) {
+			return true;
+		}
+		if (!(result instanceof IResultTable) || ((IResultTable) result).getResultMetaData() != null) {
+			return false;
+		}
+
+		for (Column column : ((IResultTable) result).getColumns()) {
+			if (!isStorable(column)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the column can be restored from its label, type, alignment,
+	 * sorting and totals, which is the case if it has the default formatter,
+	 * decorator and comparator of its type.
+	 */
+	private static boolean isStorable(Column column) {
+		if (column.getType() != null && !COLUMN_TYPES.containsKey(column.getType().getName())) {
+			return false;
+		}
+
+		Column plain = newColumn(column.getLabel(), column.getType());
+		// @formatter:off
+		return Objects.equals(column.getFormatter(), plain.getFormatter())
+				&& Objects.equals(column.getDecorator(), plain.getDecorator())
+				&& Objects.equals(column.getComparator(), plain.getComparator());
+		// @formatter:on
+	}
+
+	private static Column newColumn(String label, Class<?> type) {
+		return type == null ? new Column(label) : new Column(label, type);
+	}
+
+	private static void writeResult(DataOutputStream out, IResult result) throws IOException {
+		if (result == null) {
+			out.writeByte(RESULT_NONE);
+		} else if (result instanceof TextResult) {
+			out.writeByte(RESULT_TEXT);
+			out.writeBoolean(((TextResult) result).isHtml());
+			writeLongUTF(out, ((TextResult) result).getText());
+		} else {
+			IResultTable table = (IResultTable) result;
+			Column[] columns = table.getColumns();
+
+			out.writeByte(RESULT_TABLE);
+			out.writeInt(columns.length);
+			for (Column column : columns) {
+				out.writeUTF(column.getLabel());
+				writeNullableUTF(out, column.getType() == null ? null : column.getType().getName());
+				writeNullableUTF(out, column.getAlign() == null ? null : column.getAlign().name());
+				writeNullableUTF(out, column.getSortDirection() == null ? null : column.getSortDirection().name());
+				out.writeBoolean(column.getCalculateTotals());
+			}
+
+			int rowCount = table.getRowCount();
+			out.writeInt(rowCount);
+			for (int i = 0; i < rowCount; i++) {
+				Object row = table.getRow(i);
+				IContextObject context = table.getContext(row);
+				out.writeInt(context == null ? -1 : context.getObjectId());
+				for (int c = 0; c < columns.length; c++) {
+					writeValue(out, table.getColumnValue(row, c));
+				}
+			}
+		}
+	}
+
+	private static IResult readResult(DataInputStream in) throws IOException {
+		switch (in.readByte()) {
+		case RESULT_NONE:
+			return null;
+		case RESULT_TEXT:
+			boolean html = in.readBoolean();
+			return new TextResult(readLongUTF(in), html);
+		case RESULT_TABLE:
+			Column[] columns = new Column[in.readInt()];
+			for (int c = 0; c < columns.length; c++) {
+				String label = in.readUTF();
+				String type = in.readBoolean() ? in.readUTF() : null;
+				columns[c] = newColumn(label, type == null ? null : toColumnType(type));
+				if (in.readBoolean()) {
+					columns[c].aligning(Alignment.valueOf(in.readUTF()));
+				}
+				if (in.readBoolean()) {
+					columns[c].sorting(SortDirection.valueOf(in.readUTF()));
+				}
+				if (!in.readBoolean()) {
+					columns[c].noTotals();
+				}
+			}
+
+			int rowCount = in.readInt();
+			Object[][] rows = new Object[rowCount][columns.length];
+			int[] objectIds = new int[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				objectIds[i] = in.readInt();
+				for (int c = 0; c < columns.length; c++) {
+					rows[i][c] = readValue(in);
+				}
+			}
+			return new StoredResultTable(columns, rows, objectIds);
+		default:
+			throw new IOException("Unknown result type");
+		}
+	}
+
+	private static Class<?> toColumnType(String type) throws IOException {
+		Class<?> columnType = COLUMN_TYPES.get(type);
+		if (columnType == null) {
+			throw new IOException("Unknown column type " + type);
+		}
+		return columnType;
+	}
+
+	/**
+	 * Writes a cell value with its exact type. Values of any other type cannot be
+	 * restored, so the result is not stored at all.
+	 */
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(VALUE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(VALUE_STRING);
+			writeLongUTF(out, (String) value);
+		} else if (value instanceof Long) {
+			out.writeByte(VALUE_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(VALUE_INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Short) {
+			out.writeByte(VALUE_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(VALUE_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Double) {
+			out.writeByte(VALUE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(VALUE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(VALUE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Character) {
+			out.writeByte(VALUE_CHARACTER);
+			out.writeChar((Character) value);
+		} else {
+			throw new IOException("Cannot store a value of " + value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		switch (in.readByte()) {
+		case VALUE_NULL:
+			return null;
+		case VALUE_STRING:
+			return readLongUTF(in);
+		case VALUE_LONG:
+			return in.readLong();
+		case VALUE_INTEGER:
+			return in.readInt();
+		case VALUE_SHORT:
+			return in.readShort();
+		case VALUE_BYTE:
+			return in.readByte();
+		case VALUE_DOUBLE:
+			return in.readDouble();
+		case VALUE_FLOAT:
+			return in.readFloat();
+		case VALUE_BOOLEAN:
+			return in.readBoolean();
+		case VALUE_CHARACTER:
+			return in.readChar();
+		default:
+			throw new IOException("Unknown value type");
+		}
+	}
+
+	private static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Writes a string without the 64 KB limit of {@link DataOutputStream#writeUTF}.
+	 */
+	private static void writeLongUTF(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readLongUTF(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,147 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.query.IResultTable;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.util.IProgressListener;
+
+import co.senn.eclipse.mat.inspection.api.IInspectionResult;
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionOutcome.Status;
+import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
+import co.senn.eclipse.mat.inspection.util.ObjectIdSet;
+import co.senn.eclipse.mat.inspection.util.RetainedSizeCache;
+import co.senn.eclipse.mat.inspection.util.RetainedSizeCache.Mode;
+
+/**
+ * A compact record of what a single inspection reported for a snapshot, which
+ * can be compared with the record of the same inspection for another snapshot.
+ * Counts and sizes that are not known are -1.
+ */
+public final class InspectionSummary {
+
+	// Larger tables are counted by their rows, without collecting or sizing their objects
+	private static final int MAX_SIZED_ROWS = 100_000;
+
+	private final String inspectionId;
+	private final String inspectionName;
+	private final String technologyName;
+	private final Status status;
+	private final InspectionResultSeverity severity;
+	private final String summary;
+	private final long objects;
+	private final long retainedSize;
+
+	/**
+	 * @param severity The severity of the result, or null if nothing was found
+	 */
+	public InspectionSummary(String inspectionId, String inspectionName, String technologyName, Status status,
+			InspectionResultSeverity severity, String summary, long objects, long retainedSize) {
+		this.inspectionId = inspectionId;
+		this.inspectionName = inspectionName;
+		this.technologyName = technologyName;
+		this.status = status;
+		this.severity = severity;
+		this.summary = summary;
+		this.objects = objects;
+		this.retainedSize = retainedSize;
+	}
+
+	/**
+	 * Summarizes the outcome of an inspection. The objects of a table result are
+	 * the objects of its rows, or its rows if they have no objects. If sized, their
+	 * retained size is approximated from the dominator tree. Tables of more than
+	 * {@value #MAX_SIZED_ROWS} rows are only counted by their rows.
+	 */
+	public static InspectionSummary of(ISnapshot snapshot, InspectionOutcome outcome, boolean sized,
+			IProgressListener listener) {
+		InspectionSpec inspection = outcome.getInspection();
+		// Inspections without a registered technology are grouped under "Other"
+		String technologyName = inspection.getTechnology() == null ? "Other" : inspection.getTechnology().getName();
+		IInspectionResult result = outcome.getResult();
+		if (outcome.getStatus() != Status.COMPLETED || result == null
+				|| result.getSeverity() == InspectionResultSeverity.FAILURE) {
+			Status status = result != null && result.getSeverity() == InspectionResultSeverity.FAILURE
+					? Status.FAILED
+					: outcome.getStatus();
+			return new InspectionSummary(inspection.getId(), inspection.getName(), technologyName, status, null,
+					null, -1, -1);
+		}
+
+		long objects = -1;
+		long retainedSize = -1;
+		try {
+			IResult details = result.getResult();
+			if (details instanceof IResultTable) {
+				IResultTable table = (IResultTable) details;
+				int rows = table.getRowCount() <= MAX_SIZED_ROWS ? table.getRowCount() : 0;
+				ObjectIdSet objectIds = new ObjectIdSet();
+				for (int i = 0; i < rows; i++) {
+					IContextObject context = table.getContext(table.getRow(i));
+					if (context != null && context.getObjectId() >= 0) {
+						objectIds.add(context.getObjectId());
+					}
+				}
+
+				if (objectIds.isEmpty()) {
+					objects = table.getRowCount();
+				} else {
+					objects = objectIds.size();
+					if (sized) {
+						retainedSize = RetainedSizeCache.of(snapshot).getRetainedSize(objectIds, Mode.APPROXIMATE,
+								listener);
+					}
+				}
+			}
+		} catch (Exception e) {
+			// Only the counts are lost; the severity and summary are still compared
+		}
+
+		return new InspectionSummary(inspection.getId(), inspection.getName(), technologyName, Status.COMPLETED,
+				result.getSeverity(), result.getResultSummary(), objects, retainedSize);
+	}
+
+	public String getInspectionId() {
+		return inspectionId;
+	}
+
+	public String getInspectionName() {
+		return inspectionName;
+	}
+
+	public String getTechnologyName() {
+		return technologyName;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the severity of the result, or null if nothing was found.
+	 */
+	public InspectionResultSeverity getSeverity() {
+		return severity;
+	}
+
+	public String getSummary() {
+		return summary;
+	}
+
+	public long getObjects() {
+		return objects;
+	}
+
+	public long getRetainedSize() {
+		return retainedSize;
+	}
+
+	/**
+	 * Returns whether the inspection completed and found something.
+	 */
+	public boolean hasFinding() {
+		return status == Status.COMPLETED && severity != null;
+	}
+
+}
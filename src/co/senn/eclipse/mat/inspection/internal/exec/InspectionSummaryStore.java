@@ -0,0 +1,154 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotInfo;
+
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.internal.exec.InspectionOutcome.Status;
+
+/**
+ * Keeps the {@link InspectionSummary summaries} of the latest report of a
+ * snapshot next to its index files, so that reports of two snapshots can be
+ * compared without executing any inspections.
+ */
+public final class InspectionSummaryStore {
+
+	private static final String FILE_SUFFIX = "inspection.summaries.properties";
+	private static final String OBJECTS_KEY = "snapshot.objects";
+	private static final String HEAP_SIZE_KEY = "snapshot.heap";
+	private static final String MINIMUM_SEVERITY_KEY = "minimum.severity";
+	private static final String COUNT_KEY = "inspections";
+	private static final String INSPECTION_PREFIX = "inspection.";
+
+	private final File file;
+	private final String snapshotObjects;
+	private final String snapshotHeapSize;
+
+	public InspectionSummaryStore(ISnapshot snapshot) {
+		SnapshotInfo info = snapshot.getSnapshotInfo();
+		this.file = info.getPrefix() == null ? null : new File(info.getPrefix() + FILE_SUFFIX);
+		this.snapshotObjects = String.valueOf(info.getNumberOfObjects());
+		this.snapshotHeapSize = String.valueOf(info.getUsedHeapSize());
+	}
+
+	/**
+	 * Replaces the stored summaries with the specified ones, in report order.
+	 */
+	public void save(InspectionResultSeverity minimumSeverity, Collection<InspectionSummary> summaries) {
+		if (file == null) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty(OBJECTS_KEY, snapshotObjects);
+		properties.setProperty(HEAP_SIZE_KEY, snapshotHeapSize);
+		properties.setProperty(MINIMUM_SEVERITY_KEY, minimumSeverity.name());
+		properties.setProperty(COUNT_KEY, String.valueOf(summaries.size()));
+
+		int index = 0;
+		for (InspectionSummary summary : summaries) {
+			String prefix = INSPECTION_PREFIX + index++ + ".";
+			properties.setProperty(prefix + "id", summary.getInspectionId());
+			properties.setProperty(prefix + "name", summary.getInspectionName());
+			properties.setProperty(prefix + "technology", summary.getTechnologyName());
+			properties.setProperty(prefix + "status", summary.getStatus().name());
+			if (summary.getSeverity() != null) {
+				properties.setProperty(prefix + "severity", summary.getSeverity().name());
+			}
+			if (summary.getSummary() != null) {
+				properties.setProperty(prefix + "summary", summary.getSummary());
+			}
+			properties.setProperty(prefix + "objects", String.valueOf(summary.getObjects()));
+			properties.setProperty(prefix + "retained", String.valueOf(summary.getRetainedSize()));
+		}
+
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "Inspection summaries");
+		} catch (IOException e) {
+			// Summaries are only needed for comparisons; the report will simply be run again
+		}
+	}
+
+	/**
+	 * Returns the stored summaries by inspection ID, in report order, or null if
+	 * there are none for this parse of the dump.
+	 */
+	public Map<String, InspectionSummary> load() {
+		Properties properties = loadProperties();
+		return properties == null ? null : toSummaries(properties);
+	}
+
+	/**
+	 * Returns the minimum severity of the report whose summaries are stored, or
+	 * null if there are none for this parse of the dump.
+	 */
+	public InspectionResultSeverity loadMinimumSeverity() {
+		Properties properties = loadProperties();
+		try {
+			return properties == null ? null
+					: InspectionResultSeverity.valueOf(properties.getProperty(MINIMUM_SEVERITY_KEY));
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	private Properties loadProperties() {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		} catch (IOException e) {
+			return null;
+		}
+
+		// Discard summaries recorded for a different parse of the dump
+		if (!snapshotObjects.equals(properties.getProperty(OBJECTS_KEY))
+				|| !snapshotHeapSize.equals(properties.getProperty(HEAP_SIZE_KEY))) {
+			return null;
+		}
+		return properties;
+	}
+
+	private static Map<String, InspectionSummary> toSummaries(Properties properties) {
+		Map<String, InspectionSummary> summaries = new LinkedHashMap<>();
+		try {
+			int count = Integer.parseInt(properties.getProperty(COUNT_KEY));
+			for (int i = 0; i < count; i++) {
+				String prefix = INSPECTION_PREFIX + i + ".";
+				String severity = properties.getProperty(prefix + "severity");
+
+				// @formatter:off
+				InspectionSummary summary = new InspectionSummary(
+						properties.getProperty(prefix + "id"),
+						properties.getProperty(prefix + "name"),
+						properties.getProperty(prefix + "technology"),
+						Status.valueOf(properties.getProperty(prefix + "status")),
+						severity == null ? null : InspectionResultSeverity.valueOf(severity),
+						properties.getProperty(prefix + "summary"),
+						Long.parseLong(properties.getProperty(prefix + "objects")),
+						Long.parseLong(properties.getProperty(prefix + "retained")));
+				// @formatter:on
+				summaries.put(summary.getInspectionId(), summary);
+			}
+		} catch (RuntimeException e) {
+			// A damaged file is treated the same as a missing one
+			return null;
+		}
+		return summaries;
+	}
+
+}
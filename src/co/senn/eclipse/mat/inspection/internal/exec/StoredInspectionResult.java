@@ -0,0 +1,38 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import org.eclipse.mat.query.IResult;
+
+import co.senn.eclipse.mat.inspection.api.IInspectionResult;
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+
+/**
+ * An inspection result read back from an {@link InspectionResultStore}.
+ */
+public final class StoredInspectionResult implements IInspectionResult {
+
+	private final String resultSummary;
+	private final IResult result;
+	private final InspectionResultSeverity severity;
+
+	public StoredInspectionResult(String resultSummary, IResult result, InspectionResultSeverity severity) {
+		this.resultSummary = resultSummary;
+		this.result = result;
+		this.severity = severity;
+	}
+
+	@Override
+	public String getResultSummary() {
+		return resultSummary;
+	}
+
+	@Override
+	public IResult getResult() {
+		return result;
+	}
+
+	@Override
+	public InspectionResultSeverity getSeverity() {
+		return severity;
+	}
+
+}
@@ -0,0 +1,62 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IResultTable;
+import org.eclipse.mat.query.ResultMetaData;
+
+/**
+ * A table restored from an {@link InspectionResultStore}. Cell values are kept
+ * as plain values, and each row may refer to a heap object so that the usual
+ * object context menus remain available. Only tables without metadata are
+ * stored, so a restored table has none either.
+ */
+public final class StoredResultTable implements IResultTable {
+
+	private final Column[] columns;
+	private final Object[][] rows;
+	private final int[] objectIds;
+
+	/**
+	 * @param columns   The columns of the table
+	 * @param rows      The cell values, indexed by row and then column
+	 * @param objectIds The object ID of each row, or -1 if the row has none
+	 */
+	public StoredResultTable(Column[] columns, Object[][] rows, int[] objectIds) {
+		this.columns = columns;
+		this.rows = rows;
+		this.objectIds = objectIds;
+	}
+
+	@Override
+	public ResultMetaData getResultMetaData() {
+		return null;
+	}
+
+	@Override
+	public Column[] getColumns() {
+		return columns;
+	}
+
+	@Override
+	public int getRowCount() {
+		return rows.length;
+	}
+
+	@Override
+	public Object getRow(int rowId) {
+		return rowId;
+	}
+
+	@Override
+	public Object getColumnValue(Object row, int columnIndex) {
+		return rows[(Integer) row][columnIndex];
+	}
+
+	@Override
+	public IContextObject getContext(Object row) {
+		int objectId = objectIds[(Integer) row];
+		return objectId < 0 ? null : () -> objectId;
+	}
+
+}
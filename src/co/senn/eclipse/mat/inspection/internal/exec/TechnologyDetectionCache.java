@@ -0,0 +1,115 @@
+package co.senn.eclipse.mat.inspection.internal.exec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.SnapshotInfo;
+
+import co.senn.eclipse.mat.inspection.internal.spec.TechnologySpec;
+
+/**
+ * Remembers which technologies are present in a snapshot. Results are kept in
+ * memory while the snapshot is open and saved next to the snapshot's index
+ * files, so that reopening the same dump does not repeat detection.
+ */
+public final class TechnologyDetectionCache {
+
+	private static final String FILE_SUFFIX = "inspection.technologies.properties";
+	private static final String OBJECTS_KEY = "snapshot.objects";
+	private static final String HEAP_SIZE_KEY = "snapshot.heap";
+	private static final String TECHNOLOGY_PREFIX = "technology:";
+
+	private static final Map<ISnapshot, TechnologyDetectionCache> CACHES = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	private final File file;
+	private final String snapshotObjects;
+	private final String snapshotHeapSize;
+	private final ConcurrentMap<String, Boolean> results = new ConcurrentHashMap<>();
+	private volatile boolean dirty;
+
+	private TechnologyDetectionCache(SnapshotInfo info) {
+		this.file = info.getPrefix() == null ? null : new File(info.getPrefix() + FILE_SUFFIX);
+		this.snapshotObjects = String.valueOf(info.getNumberOfObjects());
+		this.snapshotHeapSize = String.valueOf(info.getUsedHeapSize());
+		load();
+	}
+
+	public static TechnologyDetectionCache of(ISnapshot snapshot) {
+		return CACHES.computeIfAbsent(snapshot, s -> new TechnologyDetectionCache(s.getSnapshotInfo()));
+	}
+
+	public boolean isPresent(TechnologySpec technology, ISnapshot snapshot) throws SnapshotException {
+		// Technologies without an ID (such as "Other") cannot be recognized across runs
+		if (technology.getId() == null || technology.getId().isEmpty()) {
+			return technology.getTechnology().isPresent(snapshot);
+		}
+
+		// A new version of the contributing plug-in may detect the technology differently
+		String key = TECHNOLOGY_PREFIX + technology.getId() + ":" + technology.getTechnology().getClass().getName()
+				+ ":" + technology.getVersion();
+		Boolean present = results.get(key);
+		if (present == null) {
+			present = technology.getTechnology().isPresent(snapshot);
+			results.put(key, present);
+			dirty = true;
+		}
+		return present;
+	}
+
+	public void save() {
+		if (!dirty || file == null) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty(OBJECTS_KEY, snapshotObjects);
+		properties.setProperty(HEAP_SIZE_KEY, snapshotHeapSize);
+		results.forEach((key, present) -> properties.setProperty(key, present.toString()));
+
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "Inspection technology detection results");
+			dirty = false;
+		} catch (IOException e) {
+			// The cache is only an optimization; detection will simply be repeated next time
+		}
+	}
+
+	private void load() {
+		if (file == null || !file.isFile()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		} catch (IOException e) {
+			return;
+		}
+
+		// Discard results recorded for a different parse of the dump
+		if (!snapshotObjects.equals(properties.getProperty(OBJECTS_KEY))
+				|| !snapshotHeapSize.equals(properties.getProperty(HEAP_SIZE_KEY))) {
+			return;
+		}
+
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(TECHNOLOGY_PREFIX)) {
+				results.put(key, Boolean.valueOf(properties.getProperty(key)));
+			}
+		}
+	}
+
+}
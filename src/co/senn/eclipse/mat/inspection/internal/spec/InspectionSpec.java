@@ -1,25 +1,50 @@
 package co.senn.eclipse.mat.inspection.internal.spec;
 
+import org.eclipse.core.runtime.IConfigurationElement;
+
 import co.senn.eclipse.mat.inspection.api.IInspection;
 
 public final class InspectionSpec extends AbstractSpec {
 
 	private final TechnologySpec technology;
-	private final IInspection inspection;
+	private final String version;
+	private final LazyExtension<IInspection> inspection;
 
-	public InspectionSpec(String id, String name, String description, TechnologySpec technology,
+	public InspectionSpec(String id, String name, String description, TechnologySpec technology, String version,
 			IInspection inspection) {
 		super(id, name, description);
 		this.technology = technology;
-		this.inspection = inspection;
+		this.version = version;
+		this.inspection = new LazyExtension<>(inspection);
+	}
+
+	public InspectionSpec(String id, String name, String description, TechnologySpec technology, String version,
+			IConfigurationElement config) {
+		super(id, name, description);
+		this.technology = technology;
+		this.version = version;
+		this.inspection = new LazyExtension<>(config, IInspection.class);
 	}
 
 	public TechnologySpec getTechnology() {
 		return technology;
 	}
 
+	/**
+	 * Returns the version of the inspection, used to tell whether a stored result
+	 * was produced by the same implementation.
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the inspection, instantiating it on first use.
+	 * 
+	 * @throws IllegalStateException If the inspection could not be instantiated
+	 */
 	public IInspection getInspection() {
-		return inspection;
+		return inspection.get();
 	}
 
-}
\ No newline at end of file
+}
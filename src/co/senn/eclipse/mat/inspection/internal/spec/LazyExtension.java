@@ -0,0 +1,55 @@
+package co.senn.eclipse.mat.inspection.internal.spec;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IConfigurationElement;
+
+/**
+ * An extension implementation that is only instantiated, and its class only
+ * loaded, the first time it is needed.
+ */
+final class LazyExtension<T> {
+
+	private final IConfigurationElement config;
+	private final Class<T> type;
+	private volatile T instance;
+
+	LazyExtension(T instance) {
+		this.config = null;
+		this.type = null;
+		this.instance = instance;
+	}
+
+	LazyExtension(IConfigurationElement config, Class<T> type) {
+		this.config = config;
+		this.type = type;
+	}
+
+	T get() {
+		T result = instance;
+		if (result == null) {
+			synchronized (this) {
+				result = instance;
+				if (result == null) {
+					instance = result = create();
+				}
+			}
+		}
+		return result;
+	}
+
+	private T create() {
+		Object executable;
+		try {
+			executable = config.createExecutableExtension("impl");
+		} catch (CoreException e) {
+			throw new IllegalStateException("Unable to instantiate " + config.getAttribute("impl"), e);
+		}
+
+		if (!type.isInstance(executable)) {
+			throw new IllegalStateException(config.getAttribute("impl") + " does not implement " + type.getName());
+		}
+
+		return type.cast(executable);
+	}
+
+}
@@ -1,18 +1,42 @@
 package co.senn.eclipse.mat.inspection.internal.spec;
 
+import org.eclipse.core.runtime.IConfigurationElement;
+
 import co.senn.eclipse.mat.inspection.api.ITechnology;
 
 public final class TechnologySpec extends AbstractSpec {
 
-	private final ITechnology technology;
+	private final String version;
+	private final LazyExtension<ITechnology> technology;
+
+	public TechnologySpec(String id, String name, String description, String version, ITechnology technology) {
+		super(id, name, description);
+		this.version = version;
+		this.technology = new LazyExtension<>(technology);
+	}
 
-	public TechnologySpec(String id, String name, String description, ITechnology technology) {
+	public TechnologySpec(String id, String name, String description, String version,
+			IConfigurationElement config) {
 		super(id, name, description);
-		this.technology = technology;
+		this.version = version;
+		this.technology = new LazyExtension<>(config, ITechnology.class);
+	}
+
+	/**
+	 * Returns the version of the technology, used to tell whether a stored
+	 * detection result is still valid.
+	 */
+	public String getVersion() {
+		return version;
 	}
 
+	/**
+	 * Returns the technology, instantiating it on first use.
+	 * 
+	 * @throws IllegalStateException If the technology could not be instantiated
+	 */
 	public ITechnology getTechnology() {
-		return technology;
+		return technology.get();
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package co.senn.eclipse.mat.inspection.internal.util;
+
+import org.eclipse.mat.util.IProgressListener.OperationCanceledException;
+
+/**
+ * Thrown on an inspection's thread once it has exceeded its budget. It extends
+ * {@link OperationCanceledException} so that inspections which already handle
+ * cancellation also unwind cleanly when over budget.
+ */
+public final class BudgetExceededException extends OperationCanceledException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The part of the budget that was exceeded.
+	 */
+	public enum Kind {
+		TIME, OBJECTS
+	}
+
+	private final Kind kind;
+	private final String reason;
+
+	public BudgetExceededException(Kind kind, String reason) {
+		this.kind = kind;
+		this.reason = reason;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	@Override
+	public String getMessage() {
+		return reason;
+	}
+
+}
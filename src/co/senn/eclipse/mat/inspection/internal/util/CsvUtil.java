@@ -0,0 +1,18 @@
+package co.senn.eclipse.mat.inspection.internal.util;
+
+public final class CsvUtil {
+
+	private CsvUtil() {
+	}
+
+	public static String quote(String value) {
+		if (value == null) {
+			return "";
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+}
@@ -0,0 +1,37 @@
+package co.senn.eclipse.mat.inspection.internal.util;
+
+import co.senn.eclipse.mat.inspection.util.FactStore;
+
+/**
+ * The fact store of the report whose inspection is running on the current
+ * thread. The executor binds its store around everything it runs on behalf of
+ * an inspection, in the same way that it places budgets on the
+ * {@link VisitCounter}.
+ */
+public final class CurrentFactStore {
+
+	private static final ThreadLocal<FactStore> CURRENT = new ThreadLocal<>();
+
+	private CurrentFactStore() {
+	}
+
+	/**
+	 * Returns the store bound to the current thread, or null if there is none.
+	 */
+	public static FactStore get() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Binds the specified store to the current thread until {@link #clear()} is
+	 * called.
+	 */
+	public static void set(FactStore store) {
+		CURRENT.set(store);
+	}
+
+	public static void clear() {
+		CURRENT.remove();
+	}
+
+}
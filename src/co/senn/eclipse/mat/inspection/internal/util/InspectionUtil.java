@@ -2,43 +2,117 @@ package co.senn.eclipse.mat.inspection.internal.util;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IRegistryChangeListener;
 import org.eclipse.core.runtime.Platform;
+import org.osgi.framework.Bundle;
 
-import co.senn.eclipse.mat.inspection.api.IInspection;
-import co.senn.eclipse.mat.inspection.api.ITechnology;
 import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
 import co.senn.eclipse.mat.inspection.internal.spec.TechnologySpec;
 
 public final class InspectionUtil {
 
+	private static final String NAMESPACE = "co.senn.eclipse.mat.inspection";
+
+	private static final IRegistryChangeListener LISTENER = e -> invalidate();
+
+	// Guards the cached registry and its generation, which is advanced by every registry change
+	private static final Object STATE_LOCK = new Object();
+	private static long generation;
+	private static volatile Map<TechnologySpec, List<InspectionSpec>> inspections;
+
+	// The registry that is being listened to; guarded by the class
+	private static IExtensionRegistry listenedRegistry;
+
 	private InspectionUtil() {
 	}
 
-	public static Map<TechnologySpec, List<InspectionSpec>> getInspections() throws Exception {
-		IConfigurationElement[] technologyConfigs = Platform.getExtensionRegistry()
+	/**
+	 * Returns all technologies and their inspections, in registry order. The
+	 * result is built once and reused until the extension registry changes.
+	 * Technologies and inspections are only instantiated when first used.
+	 */
+	public static Map<TechnologySpec, List<InspectionSpec>> getInspections() {
+		Map<TechnologySpec, List<InspectionSpec>> result = inspections;
+		if (result == null) {
+			synchronized (InspectionUtil.class) {
+				result = inspections;
+				if (result == null) {
+					IExtensionRegistry registry = Platform.getExtensionRegistry();
+					listen(registry);
+
+					long resolved;
+					synchronized (STATE_LOCK) {
+						resolved = generation;
+					}
+					result = resolveInspections(registry);
+
+					// A result that may have missed a change during resolution is returned, but not kept
+					synchronized (STATE_LOCK) {
+						if (generation == resolved) {
+							inspections = result;
+						}
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Stops listening to the extension registry and discards the cached
+	 * inspections. Called when the plug-in is stopped.
+	 */
+	public static synchronized void dispose() {
+		if (listenedRegistry != null) {
+			listenedRegistry.removeRegistryChangeListener(LISTENER);
+			listenedRegistry = null;
+		}
+		invalidate();
+	}
+
+	private static void listen(IExtensionRegistry registry) {
+		if (listenedRegistry != registry) {
+			if (listenedRegistry != null) {
+				listenedRegistry.removeRegistryChangeListener(LISTENER);
+			}
+			registry.addRegistryChangeListener(LISTENER, NAMESPACE);
+			listenedRegistry = registry;
+		}
+	}
+
+	private static void invalidate() {
+		synchronized (STATE_LOCK) {
+			generation++;
+			inspections = null;
+		}
+	}
+
+	private static Map<TechnologySpec, List<InspectionSpec>> resolveInspections(IExtensionRegistry registry) {
+		IConfigurationElement[] technologyConfigs = registry
 				.getConfigurationElementsFor("co.senn.eclipse.mat.inspection.technology");
-		IConfigurationElement[] inspectionConfigs = Platform.getExtensionRegistry()
+		IConfigurationElement[] inspectionConfigs = registry
 				.getConfigurationElementsFor("co.senn.eclipse.mat.inspection.inspection");
 
 		Collection<TechnologySpec> technologySpecs = new ArrayList<>();
 		for (IConfigurationElement config : technologyConfigs) {
-			Object executable = config.createExecutableExtension("impl");
-			if (executable instanceof ITechnology) {
-				// @formatter:off
-				technologySpecs.add(new TechnologySpec(
-						config.getAttribute("id"),
-						config.getAttribute("name"),
-						config.getAttribute("description"),
-						(ITechnology) executable
-				));
-				// @formatter:on
-			}
+			// @formatter:off
+			technologySpecs.add(new TechnologySpec(
+					config.getAttribute("id"),
+					config.getAttribute("name"),
+					config.getAttribute("description"),
+					getVersion(config),
+					config
+			));
+			// @formatter:on
 		}
 
 		Map<String, TechnologySpec> technologiesById = technologySpecs.stream()
@@ -46,31 +120,42 @@ public final class InspectionUtil {
 
 		Collection<InspectionSpec> inspectionSpecs = new ArrayList<>();
 		for (IConfigurationElement config : inspectionConfigs) {
-			Object executable = config.createExecutableExtension("impl");
-			if (executable instanceof IInspection) {
-				// @formatter:off
-				inspectionSpecs.add(new InspectionSpec(
-						config.getAttribute("id"),
-						config.getAttribute("name"),
-						config.getAttribute("description"),
-						technologiesById.get(config.getAttribute("technology")),
-						(IInspection) executable
-				));
-				// @formatter:on
-			}
+			// @formatter:off
+			inspectionSpecs.add(new InspectionSpec(
+					config.getAttribute("id"),
+					config.getAttribute("name"),
+					config.getAttribute("description"),
+					technologiesById.get(config.getAttribute("technology")),
+					getVersion(config),
+					config
+			));
+			// @formatter:on
 		}
 
 		Map<TechnologySpec, List<InspectionSpec>> inspectionsByTechnology = inspectionSpecs.stream()
-				.filter(i -> i.getTechnology() != null).collect(Collectors.groupingBy(InspectionSpec::getTechnology));
+				.filter(i -> i.getTechnology() != null).collect(Collectors.groupingBy(InspectionSpec::getTechnology,
+						LinkedHashMap::new, Collectors.toList()));
 
 		List<InspectionSpec> otherInspections = inspectionSpecs.stream().filter(i -> i.getTechnology() == null)
 				.collect(Collectors.toList());
 
 		if (otherInspections.size() > 0) {
-			inspectionsByTechnology.put(new TechnologySpec("", "Other", "", s -> true), otherInspections);
+			inspectionsByTechnology.put(new TechnologySpec("", "Other", "", "", s -> true), otherInspections);
+		}
+
+		// The result is shared between reports, so protect it from modification
+		inspectionsByTechnology.replaceAll((technology, specs) -> Collections.unmodifiableList(specs));
+		return Collections.unmodifiableMap(inspectionsByTechnology);
+	}
+
+	private static String getVersion(IConfigurationElement config) {
+		String version = config.getAttribute("version");
+		if (version != null && !version.isEmpty()) {
+			return version;
 		}
 
-		return inspectionsByTechnology;
+		Bundle bundle = Platform.getBundle(config.getContributor().getName());
+		return bundle == null ? "" : bundle.getVersion().toString();
 	}
 
 }
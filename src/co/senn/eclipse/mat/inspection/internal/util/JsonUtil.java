@@ -0,0 +1,58 @@
+package co.senn.eclipse.mat.inspection.internal.util;
+
+public final class JsonUtil {
+
+	private JsonUtil() {
+	}
+
+	/**
+	 * Returns the specified value as a JSON number, boolean or string.
+	 */
+	public static String value(Object value) {
+		if (value instanceof Double || value instanceof Float) {
+			double d = ((Number) value).doubleValue();
+			return Double.isNaN(d) || Double.isInfinite(d) ? quote(value.toString()) : value.toString();
+		}
+		if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+				|| value instanceof Boolean) {
+			return value.toString();
+		}
+		return value == null ? "null" : quote(String.valueOf(value));
+	}
+
+	public static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+
+		StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+}
@@ -0,0 +1,93 @@
+package co.senn.eclipse.mat.inspection.internal.util;
+
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException.Kind;
+
+/**
+ * Counts the heap objects visited through the utility helpers on the current
+ * thread. Each inspection runs on a single worker thread, so the difference
+ * between two readings taken around an inspection is the number of objects that
+ * inspection visited.
+ * <p>
+ * A budget may also be placed on the current thread, after which the helpers
+ * throw {@link BudgetExceededException} once too many objects have been visited
+ * or the deadline has passed.
+ */
+public final class VisitCounter {
+
+	// The deadline is only checked once per this many visits, to keep the count cheap
+	private static final int DEADLINE_CHECK_SHIFT = 10;
+
+	private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+	private VisitCounter() {
+	}
+
+	public static void increment() {
+		add(1);
+	}
+
+	public static void add(long count) {
+		State state = STATE.get();
+		long previous = state.count;
+		state.count += count;
+
+		if (state.count > state.limit) {
+			throw new BudgetExceededException(Kind.OBJECTS,
+					"Exceeded the budget of " + state.maxVisits + " visited objects");
+		}
+
+		if (state.hasDeadline && (previous >>> DEADLINE_CHECK_SHIFT) != (state.count >>> DEADLINE_CHECK_SHIFT)
+				&& System.nanoTime() - state.deadline > 0) {
+			throw new BudgetExceededException(Kind.TIME,
+					"Exceeded the time budget of " + state.timeoutMillis + " ms");
+		}
+	}
+
+	/**
+	 * Throws {@link BudgetExceededException} if the deadline of the current
+	 * thread has passed, for inspections that wait without visiting objects.
+	 */
+	public static void checkDeadline() {
+		State state = STATE.get();
+		if (state.hasDeadline && System.nanoTime() - state.deadline > 0) {
+			throw new BudgetExceededException(Kind.TIME,
+					"Exceeded the time budget of " + state.timeoutMillis + " ms");
+		}
+	}
+
+	public static long get() {
+		return STATE.get().count;
+	}
+
+	/**
+	 * Places a budget on the current thread until {@link #clearBudget()} is
+	 * called.
+	 * 
+	 * @param maxVisits     The number of further visits allowed, or 0 for no limit
+	 * @param timeoutMillis The time allowed from now, or 0 for no limit
+	 */
+	public static void setBudget(long maxVisits, long timeoutMillis) {
+		State state = STATE.get();
+		state.maxVisits = maxVisits;
+		state.limit = maxVisits > 0 ? state.count + maxVisits : Long.MAX_VALUE;
+		state.timeoutMillis = timeoutMillis;
+		state.hasDeadline = timeoutMillis > 0;
+		state.deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+	}
+
+	public static void clearBudget() {
+		setBudget(0, 0);
+	}
+
+	private static final class State {
+
+		private long count;
+		private long limit = Long.MAX_VALUE;
+		private long maxVisits;
+		private boolean hasDeadline;
+		private long deadline;
+		private long timeoutMillis;
+
+	}
+
+}
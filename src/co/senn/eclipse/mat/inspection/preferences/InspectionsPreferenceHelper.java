@@ -1,5 +1,15 @@
 package co.senn.eclipse.mat.inspection.preferences;
 
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.core.runtime.preferences.ConfigurationScope;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.osgi.service.prefs.BackingStoreException;
+
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+
 public final class InspectionsPreferenceHelper {
 
 	private InspectionsPreferenceHelper() {
@@ -7,5 +17,80 @@ public final class InspectionsPreferenceHelper {
 
 	public static final String PREFERENCE_NODE = "co.senn.eclipse.mat.inspection.preferences";
 	public static final String INSPECTION_DISABLE_PREFIX = "disable-inspection:";
+	public static final String MINIMUM_SEVERITY = "minimum-severity";
+
+	// The maximum memory used by the string cache of each snapshot, in megabytes; 0 disables it
+	public static final String STRING_CACHE_SIZE = "string-cache-size";
+
+	// Budgets: timeouts are in seconds, object caps count objects visited through the util helpers; 0 is unlimited
+	public static final String DEFAULT_TIMEOUT = "default-inspection-timeout";
+	public static final String DEFAULT_MAX_OBJECTS = "default-inspection-max-objects";
+	public static final String TECHNOLOGY_TIMEOUT_PREFIX = "technology-timeout:";
+	public static final String TECHNOLOGY_MAX_OBJECTS_PREFIX = "technology-max-objects:";
+	public static final String INSPECTION_TIMEOUT_PREFIX = "inspection-timeout:";
+	public static final String INSPECTION_MAX_OBJECTS_PREFIX = "inspection-max-objects:";
+
+	// The recorded wall time of each inspection, in nanoseconds per object of the snapshot it inspected
+	public static final String INSPECTION_COST_PREFIX = "inspection-cost:";
+
+	/**
+	 * Returns a boolean indicating whether the inspection by the specified ID has
+	 * been disabled on the preference page.
+	 */
+	public static boolean isInspectionDisabled(String inspectionId) {
+		return ConfigurationScope.INSTANCE.getNode(PREFERENCE_NODE)
+				.getBoolean(INSPECTION_DISABLE_PREFIX + inspectionId, false);
+	}
+
+	/**
+	 * Returns the lowest severity that is reported. Inspections that cannot reach
+	 * it are not executed.
+	 */
+	public static InspectionResultSeverity getMinimumSeverity() {
+		String fallback = DefaultScope.INSTANCE.getNode(PREFERENCE_NODE).get(MINIMUM_SEVERITY,
+				InspectionResultSeverity.INFO.name());
+		try {
+			return InspectionResultSeverity
+					.valueOf(ConfigurationScope.INSTANCE.getNode(PREFERENCE_NODE).get(MINIMUM_SEVERITY, fallback));
+		} catch (IllegalArgumentException e) {
+			return InspectionResultSeverity.INFO;
+		}
+	}
+
+	/**
+	 * Reads the specified preference from the configuration scope, falling back to
+	 * the default scope and then to the specified value.
+	 */
+	public static long getLong(String key, long defaultValue) {
+		long fallback = DefaultScope.INSTANCE.getNode(PREFERENCE_NODE).getLong(key, defaultValue);
+		return ConfigurationScope.INSTANCE.getNode(PREFERENCE_NODE).getLong(key, fallback);
+	}
+
+	/**
+	 * Returns the recorded cost of the inspection by the specified ID, in
+	 * nanoseconds per object, or -1 if it has never been recorded.
+	 */
+	public static double getInspectionCost(String inspectionId) {
+		return ConfigurationScope.INSTANCE.getNode(PREFERENCE_NODE).getDouble(INSPECTION_COST_PREFIX + inspectionId,
+				-1);
+	}
+
+	/**
+	 * Records the costs of the inspections by the specified IDs, in nanoseconds
+	 * per object. Costs are only used to order inspections, so failing to save
+	 * them is ignored.
+	 */
+	public static void setInspectionCosts(Map<String, Double> costs) {
+		IEclipsePreferences node = ConfigurationScope.INSTANCE.getNode(PREFERENCE_NODE);
+		for (Entry<String, Double> cost : costs.entrySet()) {
+			node.putDouble(INSPECTION_COST_PREFIX + cost.getKey(), cost.getValue());
+		}
+
+		try {
+			node.flush();
+		} catch (BackingStoreException e) {
+			// The costs are recorded again by the next report
+		}
+	}
 
 }
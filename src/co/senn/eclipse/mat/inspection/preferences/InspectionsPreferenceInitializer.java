@@ -1,11 +1,25 @@
 package co.senn.eclipse.mat.inspection.preferences;
 
 import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.osgi.service.prefs.Preferences;
+
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
+import co.senn.eclipse.mat.inspection.util.StringCache;
 
 public class InspectionsPreferenceInitializer extends AbstractPreferenceInitializer {
 
 	public void initializeDefaultPreferences() {
-		// Nothing to initialize yet. Preferences only exist for disabled inspections.
+		Preferences defaults = DefaultScope.INSTANCE.getNode(InspectionsPreferenceHelper.PREFERENCE_NODE);
+
+		// Inspections are unbounded unless configured otherwise
+		defaults.putLong(InspectionsPreferenceHelper.DEFAULT_TIMEOUT, 0);
+		defaults.putLong(InspectionsPreferenceHelper.DEFAULT_MAX_OBJECTS, 0);
+
+		// Every result is reported unless configured otherwise
+		defaults.put(InspectionsPreferenceHelper.MINIMUM_SEVERITY, InspectionResultSeverity.INFO.name());
+
+		defaults.putLong(InspectionsPreferenceHelper.STRING_CACHE_SIZE, StringCache.DEFAULT_MAX_MEGABYTES);
 	}
 
 }
@@ -1,6 +1,7 @@
 package co.senn.eclipse.mat.inspection.preferences;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -11,9 +12,12 @@ import org.eclipse.jface.preference.*;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Combo;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Text;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.swt.widgets.TreeColumn;
 import org.eclipse.swt.widgets.TreeItem;
@@ -21,19 +25,29 @@ import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.osgi.service.prefs.BackingStoreException;
 import org.osgi.service.prefs.Preferences;
 
+import co.senn.eclipse.mat.inspection.api.InspectionResultSeverity;
 import co.senn.eclipse.mat.inspection.internal.spec.InspectionSpec;
 import co.senn.eclipse.mat.inspection.internal.spec.TechnologySpec;
 import co.senn.eclipse.mat.inspection.internal.util.InspectionUtil;
+import co.senn.eclipse.mat.inspection.util.StringCache;
 
 import org.eclipse.ui.IWorkbench;
 
 public class InspectionsPreferencePage extends PreferencePage implements IWorkbenchPreferencePage {
 
+	// Failures are always reported, so they cannot be chosen as the minimum
+	private static final InspectionResultSeverity[] REPORTABLE_SEVERITIES = { InspectionResultSeverity.INFO,
+			InspectionResultSeverity.WARN, InspectionResultSeverity.SEVERE };
+
 	private final Preferences preferences = ConfigurationScope.INSTANCE
 			.getNode(InspectionsPreferenceHelper.PREFERENCE_NODE);
 
 	private boolean success = true;
 	private Tree tree = null;
+	private Text timeoutText = null;
+	private Text maxObjectsText = null;
+	private Combo severityCombo = null;
+	private Text stringCacheText = null;
 
 	public InspectionsPreferencePage() {
 		super();
@@ -80,8 +94,7 @@ public class InspectionsPreferencePage extends PreferencePage implements IWorkbe
 					TreeItem inspectionItem = new TreeItem(technologyItem, SWT.NONE);
 					inspectionItem.setData(inspectionSpec);
 					inspectionItem.setText(new String[] { inspectionSpec.getName(), inspectionSpec.getDescription() });
-					inspectionItem.setChecked(!preferences.getBoolean(
-							InspectionsPreferenceHelper.INSPECTION_DISABLE_PREFIX + inspectionSpec.getId(), false));
+					inspectionItem.setChecked(!InspectionsPreferenceHelper.isInspectionDisabled(inspectionSpec.getId()));
 
 					if (inspectionItem.getChecked()) {
 						technologyItem.setChecked(true);
@@ -113,6 +126,45 @@ public class InspectionsPreferencePage extends PreferencePage implements IWorkbe
 					}
 				}
 			});
+
+			Group budgetGroup = new Group(top, SWT.NONE);
+			budgetGroup.setText("Default budget per inspection (0 for unlimited)");
+			budgetGroup.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+			budgetGroup.setLayout(new GridLayout(2, false));
+
+			Label timeoutLabel = new Label(budgetGroup, SWT.NONE);
+			timeoutLabel.setText("Time limit (seconds):");
+			timeoutText = new Text(budgetGroup, SWT.BORDER);
+			timeoutText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+			timeoutText.setText(String.valueOf(InspectionsPreferenceHelper
+					.getLong(InspectionsPreferenceHelper.DEFAULT_TIMEOUT, 0)));
+
+			Label maxObjectsLabel = new Label(budgetGroup, SWT.NONE);
+			maxObjectsLabel.setText("Objects visited:");
+			maxObjectsText = new Text(budgetGroup, SWT.BORDER);
+			maxObjectsText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+			maxObjectsText.setText(String.valueOf(InspectionsPreferenceHelper
+					.getLong(InspectionsPreferenceHelper.DEFAULT_MAX_OBJECTS, 0)));
+
+			Composite severityComposite = new Composite(top, SWT.NONE);
+			severityComposite.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+			severityComposite.setLayout(new GridLayout(2, false));
+
+			Label severityLabel = new Label(severityComposite, SWT.NONE);
+			severityLabel.setText("Minimum severity to report:");
+			severityCombo = new Combo(severityComposite, SWT.DROP_DOWN | SWT.READ_ONLY);
+			for (InspectionResultSeverity severity : REPORTABLE_SEVERITIES) {
+				severityCombo.add(severity.getName());
+			}
+			severityCombo.select(Math.max(0,
+					Arrays.asList(REPORTABLE_SEVERITIES).indexOf(InspectionsPreferenceHelper.getMinimumSeverity())));
+
+			Label stringCacheLabel = new Label(severityComposite, SWT.NONE);
+			stringCacheLabel.setText("String cache per snapshot (MB, 0 to disable):");
+			stringCacheText = new Text(severityComposite, SWT.BORDER);
+			stringCacheText.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+			stringCacheText.setText(String.valueOf(InspectionsPreferenceHelper
+					.getLong(InspectionsPreferenceHelper.STRING_CACHE_SIZE, StringCache.DEFAULT_MAX_MEGABYTES)));
 		} catch (Exception e) {
 			Label error = new Label(top, SWT.NONE);
 			error.setText("An error occurred while loading the inspection preferences");
@@ -131,7 +183,37 @@ public class InspectionsPreferencePage extends PreferencePage implements IWorkbe
 			return false;
 		}
 
+		long timeout;
+		long maxObjects;
+		long stringCacheSize;
+		try {
+			timeout = Long.parseLong(timeoutText.getText().trim());
+			maxObjects = Long.parseLong(maxObjectsText.getText().trim());
+			stringCacheSize = Long.parseLong(stringCacheText.getText().trim());
+		} catch (NumberFormatException e) {
+			setErrorMessage("Budgets and cache sizes must be whole numbers");
+			return false;
+		}
+
+		if (timeout < 0 || maxObjects < 0 || stringCacheSize < 0) {
+			setErrorMessage("Budgets and cache sizes must not be negative");
+			return false;
+		}
+
+		setErrorMessage(null);
+
 		try {
+			// Store the default budgets
+			preferences.putLong(InspectionsPreferenceHelper.DEFAULT_TIMEOUT, timeout);
+			preferences.putLong(InspectionsPreferenceHelper.DEFAULT_MAX_OBJECTS, maxObjects);
+
+			// Store the string cache size
+			preferences.putLong(InspectionsPreferenceHelper.STRING_CACHE_SIZE, stringCacheSize);
+
+			// Store the minimum severity
+			preferences.put(InspectionsPreferenceHelper.MINIMUM_SEVERITY,
+					REPORTABLE_SEVERITIES[Math.max(0, severityCombo.getSelectionIndex())].name());
+
 			// Clear any disabled inspections
 			for (String key : preferences.keys()) {
 				if (key.startsWith(InspectionsPreferenceHelper.INSPECTION_DISABLE_PREFIX)) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+/**
+ * The size and capacity of a collection in a snapshot, as returned by
+ * {@link CollectionUtil#summarize(org.eclipse.mat.snapshot.model.IObject)}.
+ * 
+ * @author Andy Senn
+ */
+public final class CollectionSummary {
+
+	private final int objectId;
+	private final int size;
+	private final int capacity;
+
+	public CollectionSummary(int objectId, int size, int capacity) {
+		this.objectId = objectId;
+		this.size = size;
+		this.capacity = capacity;
+	}
+
+	public int getObjectId() {
+		return objectId;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of slots that hold nothing.
+	 */
+	public int getUnusedCapacity() {
+		return Math.max(0, capacity - size);
+	}
+
+	/**
+	 * Returns the ratio of size to capacity, or 0 for a collection without
+	 * capacity. Hash tables can hold more entries than slots, so the ratio may
+	 * exceed 1.
+	 */
+	public double getFillRatio() {
+		return capacity == 0 ? 0 : (double) size / capacity;
+	}
+
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IArray;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.model.IObjectArray;
+
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotEntryPredicate;
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotIntPredicate;
+
+/**
+ * A collection of helper methods for reading the contents of JDK collections
+ * in a heap dump.
+ * <p>
+ * Collections are recognized by their internal fields rather than their class
+ * names, so subclasses and the common variants are supported:
+ * <ul>
+ * <li>Maps: {@code HashMap}, {@code LinkedHashMap}, {@code Hashtable} and
+ * {@code ConcurrentHashMap}, including its Java 7 segments</li>
+ * <li>Sets backed by a map, such as {@code HashSet} and
+ * {@code LinkedHashSet}</li>
+ * <li>Lists and deques: {@code ArrayList}, {@code Vector},
+ * {@code CopyOnWriteArrayList}, {@code LinkedList} and
+ * {@code ArrayDeque}</li>
+ * </ul>
+ * Contents are passed to a visitor as object IDs, one at a time, without
+ * building intermediate collections, and backing arrays are read in chunks.
+ * Sizes and capacities are read from fields and array lengths, without
+ * visiting any contents.
+ * 
+ * @author Andy Senn
+ */
+public final class CollectionUtil {
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private static final FieldAccessor MAP = FieldAccessor.of("map");
+	private static final FieldAccessor TABLE = FieldAccessor.of("table");
+	private static final FieldAccessor SEGMENTS = FieldAccessor.of("segments");
+	private static final FieldAccessor KEY = FieldAccessor.of("key");
+	private static final FieldAccessor VALUE = FieldAccessor.of("value");
+	private static final FieldAccessor VAL = FieldAccessor.of("val");
+	private static final FieldAccessor NEXT = FieldAccessor.of("next");
+	private static final FieldAccessor FIRST = FieldAccessor.of("first");
+	private static final FieldAccessor ITEM = FieldAccessor.of("item");
+	private static final FieldAccessor SIZE = FieldAccessor.of("size");
+	private static final FieldAccessor COUNT = FieldAccessor.of("count");
+	private static final FieldAccessor BASE_COUNT = FieldAccessor.of("baseCount");
+	private static final FieldAccessor COUNTER_CELLS = FieldAccessor.of("counterCells");
+	private static final FieldAccessor ELEMENT_DATA = FieldAccessor.of("elementData");
+	private static final FieldAccessor ELEMENT_COUNT = FieldAccessor.of("elementCount");
+	private static final FieldAccessor ELEMENTS = FieldAccessor.of("elements");
+	private static final FieldAccessor HEAD = FieldAccessor.of("head");
+	private static final FieldAccessor TAIL = FieldAccessor.of("tail");
+	private static final FieldAccessor ARRAY = FieldAccessor.of("array");
+
+	private CollectionUtil() {
+	}
+
+	/**
+	 * Passes the object IDs of the key and value of each entry of the specified
+	 * map to the provided visitor, until it returns false. A null key or value is
+	 * passed as -1. For a set backed by a map, the keys are the elements of the
+	 * set.
+	 * <p>
+	 * Entries of a {@code ConcurrentHashMap} that was being resized when the dump
+	 * was taken may be missed.
+	 * 
+	 * @param map     The map
+	 * @param visitor The visitor to which the entries are passed, returning false
+	 *                to stop
+	 * @return The number of entries passed to the visitor
+	 * @throws SnapshotException
+	 * @throws IllegalArgumentException If the object is not a supported map
+	 */
+	public static int forEachEntry(IObject map, SnapshotEntryPredicate visitor) throws SnapshotException {
+		Walk walk = new Walk();
+		visitMap(map, visitor, walk);
+		return walk.visited;
+	}
+
+	/**
+	 * Passes the object ID of each element of the specified list, deque or set to
+	 * the provided visitor, in iteration order, until it returns false. A null
+	 * element is passed as -1.
+	 * 
+	 * @param collection The list, deque or set
+	 * @param visitor    The visitor to which the elements are passed, returning
+	 *                   false to stop
+	 * @return The number of elements passed to the visitor
+	 * @throws SnapshotException
+	 * @throws IllegalArgumentException If the object is not a supported
+	 *                                  collection
+	 */
+	public static int forEachElement(IObject collection, SnapshotIntPredicate visitor) throws SnapshotException {
+		ISnapshot snapshot = collection.getSnapshot();
+		Walk walk = new Walk();
+		if (MAP.isPresent(collection)) {
+			IObject map = MAP.getObject(collection);
+			if (map != null) {
+				visitMap(map, (keyId, valueId) -> visitor.test(keyId), walk);
+			}
+		} else if (ELEMENT_DATA.isPresent(collection)) {
+			int size = SIZE.isPresent(collection) ? SIZE.getInt(collection) : ELEMENT_COUNT.getInt(collection);
+			visitArray(snapshot, ELEMENT_DATA.getObjectId(collection), 0, size, visitor, walk);
+		} else if (ARRAY.isPresent(collection)) {
+			int arrayId = ARRAY.getObjectId(collection);
+			visitArray(snapshot, arrayId, 0, getLength(snapshot, arrayId), visitor, walk);
+		} else if (ELEMENTS.isPresent(collection) && HEAD.isPresent(collection)) {
+			int arrayId = ELEMENTS.getObjectId(collection);
+			int length = getLength(snapshot, arrayId);
+			int head = HEAD.getInt(collection);
+			int size = getDequeSize(head, TAIL.getInt(collection), length);
+			int end = Math.min(length, head + size);
+			if (visitArray(snapshot, arrayId, head, end, visitor, walk)) {
+				visitArray(snapshot, arrayId, 0, size - (end - head), visitor, walk);
+			}
+		} else if (FIRST.isPresent(collection)) {
+			int nodeId = FIRST.getObjectId(collection);
+			while (nodeId >= 0) {
+				IObject node = snapshot.getObject(nodeId);
+				VisitCounter.increment();
+				walk.visited++;
+				if (!visitor.test(ITEM.getObjectId(node))) {
+					break;
+				}
+				nodeId = NEXT.getObjectId(node);
+			}
+		} else {
+			throw unsupported(collection);
+		}
+		return walk.visited;
+	}
+
+	/**
+	 * Returns the number of entries or elements in the specified collection,
+	 * without visiting them.
+	 * 
+	 * @param collection The map, set, list or deque
+	 * @return The number of entries or elements
+	 * @throws SnapshotException
+	 * @throws IllegalArgumentException If the object is not a supported
+	 *                                  collection
+	 */
+	public static int getSize(IObject collection) throws SnapshotException {
+		ISnapshot snapshot = collection.getSnapshot();
+		if (SIZE.isPresent(collection)) {
+			return SIZE.getInt(collection);
+		} else if (MAP.isPresent(collection)) {
+			IObject map = MAP.getObject(collection);
+			return map == null ? 0 : getSize(map);
+		} else if (BASE_COUNT.isPresent(collection)) {
+			// Java 8+ ConcurrentHashMap spreads its count across cells under contention
+			long size = BASE_COUNT.getLong(collection);
+			int cellsId = COUNTER_CELLS.getObjectId(collection);
+			for (int cellId : getReferenceIds(snapshot, cellsId)) {
+				if (cellId >= 0) {
+					size += VALUE.getLong(snapshot.getObject(cellId), 0);
+				}
+			}
+			return (int) Math.max(0, Math.min(Integer.MAX_VALUE, size));
+		} else if (SEGMENTS.isPresent(collection)) {
+			int size = 0;
+			for (int segmentId : getReferenceIds(snapshot, SEGMENTS.getObjectId(collection))) {
+				if (segmentId >= 0) {
+					size += COUNT.getInt(snapshot.getObject(segmentId), 0);
+				}
+			}
+			return size;
+		} else if (TABLE.isPresent(collection) && COUNT.isPresent(collection)) {
+			return COUNT.getInt(collection);
+		} else if (ELEMENT_COUNT.isPresent(collection)) {
+			return ELEMENT_COUNT.getInt(collection);
+		} else if (ELEMENTS.isPresent(collection) && HEAD.isPresent(collection)) {
+			return getDequeSize(HEAD.getInt(collection), TAIL.getInt(collection),
+					getLength(snapshot, ELEMENTS.getObjectId(collection)));
+		} else if (ARRAY.isPresent(collection)) {
+			return getLength(snapshot, ARRAY.getObjectId(collection));
+		}
+		throw unsupported(collection);
+	}
+
+	/**
+	 * Returns the number of slots in the backing array or hash table of the
+	 * specified collection, without visiting its contents. A linked list has no
+	 * spare capacity, so its capacity is its size.
+	 * 
+	 * @param collection The map, set, list or deque
+	 * @return The capacity of the collection
+	 * @throws SnapshotException
+	 * @throws IllegalArgumentException If the object is not a supported
+	 *                                  collection
+	 */
+	public static int getCapacity(IObject collection) throws SnapshotException {
+		ISnapshot snapshot = collection.getSnapshot();
+		if (TABLE.isPresent(collection)) {
+			return getLength(snapshot, TABLE.getObjectId(collection));
+		} else if (MAP.isPresent(collection)) {
+			IObject map = MAP.getObject(collection);
+			return map == null ? 0 : getCapacity(map);
+		} else if (SEGMENTS.isPresent(collection)) {
+			int capacity = 0;
+			for (int segmentId : getReferenceIds(snapshot, SEGMENTS.getObjectId(collection))) {
+				if (segmentId >= 0) {
+					capacity += getLength(snapshot, TABLE.getObjectId(snapshot.getObject(segmentId)));
+				}
+			}
+			return capacity;
+		} else if (ELEMENT_DATA.isPresent(collection)) {
+			return getLength(snapshot, ELEMENT_DATA.getObjectId(collection));
+		} else if (ELEMENTS.isPresent(collection)) {
+			return getLength(snapshot, ELEMENTS.getObjectId(collection));
+		} else if (ARRAY.isPresent(collection)) {
+			return getLength(snapshot, ARRAY.getObjectId(collection));
+		} else if (FIRST.isPresent(collection)) {
+			return getSize(collection);
+		}
+		throw unsupported(collection);
+	}
+
+	/**
+	 * Returns the size and capacity of the specified collection, without visiting
+	 * its contents.
+	 * 
+	 * @param collection The map, set, list or deque
+	 * @return A summary of the collection
+	 * @throws SnapshotException
+	 * @throws IllegalArgumentException If the object is not a supported
+	 *                                  collection
+	 */
+	public static CollectionSummary summarize(IObject collection) throws SnapshotException {
+		return new CollectionSummary(collection.getObjectId(), getSize(collection), getCapacity(collection));
+	}
+
+	private static void visitMap(IObject map, SnapshotEntryPredicate visitor, Walk walk) throws SnapshotException {
+		ISnapshot snapshot = map.getSnapshot();
+		if (MAP.isPresent(map)) {
+			IObject backingMap = MAP.getObject(map);
+			if (backingMap != null) {
+				visitMap(backingMap, visitor, walk);
+			}
+		} else if (SEGMENTS.isPresent(map)) {
+			for (int segmentId : getReferenceIds(snapshot, SEGMENTS.getObjectId(map))) {
+				if (segmentId >= 0 && !walk.stopped) {
+					visitTable(snapshot, TABLE.getObjectId(snapshot.getObject(segmentId)), visitor, walk);
+				}
+			}
+		} else if (TABLE.isPresent(map)) {
+			visitTable(snapshot, TABLE.getObjectId(map), visitor, walk);
+		} else {
+			throw unsupported(map);
+		}
+	}
+
+	private static void visitTable(ISnapshot snapshot, int tableId, SnapshotEntryPredicate visitor, Walk walk)
+			throws SnapshotException {
+		visitArray(snapshot, tableId, 0, getLength(snapshot, tableId), binId -> {
+			if (binId >= 0) {
+				visitBin(snapshot, binId, visitor, walk);
+			}
+			return !walk.stopped;
+		}, new Walk());
+	}
+
+	private static void visitBin(ISnapshot snapshot, int nodeId, SnapshotEntryPredicate visitor, Walk walk)
+			throws SnapshotException {
+		while (nodeId >= 0) {
+			IObject node = snapshot.getObject(nodeId);
+			VisitCounter.increment();
+
+			String className = node.getClazz().getName();
+			if (className.endsWith("$TreeBin")) {
+				// The tree nodes of a ConcurrentHashMap bin are also linked in order
+				nodeId = FIRST.getObjectId(node);
+				continue;
+			}
+			if (className.endsWith("$ForwardingNode") || className.endsWith("$ReservationNode")) {
+				return;
+			}
+
+			int valueId = VALUE.isPresent(node) ? VALUE.getObjectId(node) : VAL.getObjectId(node);
+			walk.visited++;
+			if (!visitor.test(KEY.getObjectId(node), valueId)) {
+				walk.stopped = true;
+				return;
+			}
+			nodeId = NEXT.getObjectId(node);
+		}
+	}
+
+	/**
+	 * Passes the object IDs in the specified range of an object array to the
+	 * visitor, a chunk at a time, and returns false if the visitor stopped.
+	 */
+	private static boolean visitArray(ISnapshot snapshot, int arrayId, int from, int to, SnapshotIntPredicate visitor,
+			Walk walk) throws SnapshotException {
+		if (arrayId < 0 || from >= to) {
+			return true;
+		}
+
+		IObjectArray array = (IObjectArray) snapshot.getObject(arrayId);
+		int end = Math.min(to, array.getLength());
+		for (int offset = from; offset < end; offset += CHUNK_SIZE) {
+			long[] addresses = array.getReferenceArray(offset, Math.min(CHUNK_SIZE, end - offset));
+			// Slots are counted as they are read, so a huge, mostly empty table still counts against the budget
+			VisitCounter.add(addresses.length);
+			for (long address : addresses) {
+				walk.visited++;
+				if (!visitor.test(address == 0 ? -1 : snapshot.mapAddressToId(address))) {
+					walk.stopped = true;
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int[] getReferenceIds(ISnapshot snapshot, int arrayId) throws SnapshotException {
+		if (arrayId < 0) {
+			return new int[0];
+		}
+
+		long[] addresses = ((IObjectArray) snapshot.getObject(arrayId)).getReferenceArray();
+		VisitCounter.add(addresses.length);
+		int[] objectIds = new int[addresses.length];
+		for (int i = 0; i < addresses.length; i++) {
+			objectIds[i] = addresses[i] == 0 ? -1 : snapshot.mapAddressToId(addresses[i]);
+		}
+		return objectIds;
+	}
+
+	private static int getLength(ISnapshot snapshot, int arrayId) throws SnapshotException {
+		return arrayId < 0 ? 0 : ((IArray) snapshot.getObject(arrayId)).getLength();
+	}
+
+	private static int getDequeSize(int head, int tail, int length) {
+		// Older deques have a power-of-two length, newer ones any length; both wrap around
+		int size = tail - head;
+		return size < 0 ? size + length : size;
+	}
+
+	private static IllegalArgumentException unsupported(IObject collection) {
+		return new IllegalArgumentException(
+				"Object " + collection.getTechnicalName() + " is not a supported collection");
+	}
+
+	private static final class Walk {
+
+		private int visited;
+		private boolean stopped;
+
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+
+import co.senn.eclipse.mat.inspection.internal.util.CurrentFactStore;
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotFunction;
+
+/**
+ * Derived data that several inspections of a snapshot need, such as all
+ * threads or all class loaders, computed once per report and shared by all
+ * inspections instead of being recomputed by each of them.
+ * <p>
+ * A fact is declared once, usually as a constant of the inspection or
+ * technology that needs it, and requested with {@link #get(Fact)}:
+ * 
+ * <pre>
+ * private static final Fact&lt;int[]&gt; SESSIONS = FactStore.fact("Tomcat sessions",
+ * 		snapshot -&gt; InspectionUtil.getObjectIds("org.apache.catalina.session.StandardSession", true, snapshot)
+ * 				.toArray());
+ * 
+ * int[] sessions = FactStore.of(snapshot).get(SESSIONS);
+ * </pre>
+ * 
+ * The first inspection to request a fact computes it on its own thread, and
+ * inspections that request it meanwhile wait for that result rather than
+ * computing it again. The objects visited while computing a fact count against
+ * the budget of the inspection that computes it. If the computation fails, for
+ * example because that inspection ran out of budget, the failure is reported
+ * to that inspection only, and the next waiting inspection computes the fact
+ * itself.
+ * <p>
+ * Each report has its own store, which is discarded when the report finishes,
+ * so concurrent reports on the same snapshot never see each other's facts.
+ * Values are shared, so they must not be modified.
+ * 
+ * @author Andy Senn
+ */
+public final class FactStore {
+
+	/**
+	 * The object IDs of all instances of {@code java.lang.Thread} and its
+	 * subclasses
+	 */
+	public static final Fact<int[]> THREADS = fact("Threads",
+			snapshot -> InspectionUtil.getObjectIds("java.lang.Thread", true, snapshot).toArray());
+
+	/**
+	 * The object IDs of all instances of {@code java.lang.ClassLoader} and its
+	 * subclasses
+	 */
+	public static final Fact<int[]> CLASS_LOADERS = fact("Class Loaders",
+			snapshot -> InspectionUtil.getObjectIds("java.lang.ClassLoader", true, snapshot).toArray());
+
+	// How often waiting inspections check their own time budget
+	private static final long WAIT_MILLIS = 100;
+
+	private final ISnapshot snapshot;
+	private final Map<Fact<?>, CompletableFuture<Object>> facts = new ConcurrentHashMap<>();
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder computations = new LongAdder();
+
+	/**
+	 * Creates an empty store. Reports create their own store; inspections obtain
+	 * it with {@link #of(ISnapshot)}.
+	 * 
+	 * @param snapshot The snapshot the facts are derived from
+	 */
+	public FactStore(ISnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the store of the report that is executing the current inspection.
+	 * Outside of a report, or on a thread the report did not start, a new store
+	 * is returned, whose facts are not shared.
+	 * 
+	 * @param snapshot The snapshot the facts are derived from
+	 * @return The store of the current report
+	 */
+	public static FactStore of(ISnapshot snapshot) {
+		FactStore store = CurrentFactStore.get();
+		return store != null && store.snapshot == snapshot ? store : new FactStore(snapshot);
+	}
+
+	/**
+	 * Declares a fact. Facts are identified by the returned instance, not by
+	 * their name, so the same declaration must be used by every inspection that
+	 * shares the fact.
+	 * 
+	 * @param name     The name of the fact, for diagnostics
+	 * @param function The function that derives the fact from a snapshot
+	 * @return The fact
+	 */
+	public static <T> Fact<T> fact(String name, SnapshotFunction<ISnapshot, T> function) {
+		return new Fact<>(name, function);
+	}
+
+	/**
+	 * Returns the value of the specified fact, computing it on the current
+	 * thread, or waiting for another thread that is computing it.
+	 * 
+	 * @param fact The fact to be returned
+	 * @return The value of the fact
+	 * @throws SnapshotException If the fact could not be computed on the
+	 *                           current thread
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Fact<T> fact) throws SnapshotException {
+		requests.increment();
+		while (true) {
+			CompletableFuture<Object> value = facts.get(fact);
+			if (value == null) {
+				CompletableFuture<Object> computing = new CompletableFuture<>();
+				value = facts.putIfAbsent(fact, computing);
+				if (value == null) {
+					return compute(fact, computing);
+				}
+			}
+
+			try {
+				return (T) await(value);
+			} catch (ExecutionException e) {
+				// The thread computing the fact failed; try again on this one
+				facts.remove(fact, value);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of times a fact was requested.
+	 */
+	public long getRequests() {
+		return requests.sum();
+	}
+
+	/**
+	 * Returns the number of times a fact was computed.
+	 */
+	public long getComputations() {
+		return computations.sum();
+	}
+
+	private <T> T compute(Fact<T> fact, CompletableFuture<Object> computing) throws SnapshotException {
+		computations.increment();
+		try {
+			T value = fact.function.apply(snapshot);
+			computing.complete(value);
+			return value;
+		} catch (SnapshotException | RuntimeException | Error e) {
+			facts.remove(fact, computing);
+			computing.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	private static Object await(CompletableFuture<Object> value) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return value.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					VisitCounter.checkDeadline();
+				} catch (InterruptedException e) {
+					// Inspections are not stopped by interruption, so keep waiting
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * A named piece of data derived from a snapshot.
+	 * 
+	 * @param <T> The type of the data
+	 * @author Andy Senn
+	 */
+	public static final class Fact<T> {
+
+		private final String name;
+		private final SnapshotFunction<ISnapshot, T> function;
+
+		private Fact(String name, SnapshotFunction<ISnapshot, T> function) {
+			this.name = name;
+			this.function = function;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+}
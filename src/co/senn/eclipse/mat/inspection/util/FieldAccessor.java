@@ -0,0 +1,333 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.Field;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IInstance;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.model.ObjectReference;
+
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+
+/**
+ * Reads a single member field from many objects. The position of the field in
+ * an instance's field list is looked up once per class of each snapshot, after
+ * which values are read directly from the list, without parsing a field path
+ * or converting values to strings.
+ * <p>
+ * An accessor is thread-safe and is meant to be created once and kept, for
+ * example in a static field of an inspection:
+ * 
+ * <pre>
+ * private static final FieldAccessor SIZE = FieldAccessor.of("size");
+ * ...
+ * int size = SIZE.getInt(object, 0);
+ * </pre>
+ * 
+ * Unlike {@link IObject#resolveValue(String)}, only a single field name is
+ * supported, not a dotted path. If a class declares a field with the same name
+ * as one of its super classes, the field of the subclass is read.
+ * 
+ * @author Andy Senn
+ */
+public final class FieldAccessor {
+
+	private static final int MISSING = -1;
+
+	private final String name;
+	// Class IDs are only unique within a snapshot, so indexes are kept per snapshot
+	private final Map<ISnapshot, Map<Integer, Integer>> indexes = Collections.synchronizedMap(new WeakHashMap<>());
+
+	// Objects of the same class are usually read one after another
+	private volatile ClassIndex last = new ClassIndex(null, -1, MISSING);
+
+	private FieldAccessor(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns an accessor for the member field by the specified name.
+	 * 
+	 * @param name The name of the field, without any path
+	 * @return A new accessor
+	 */
+	public static FieldAccessor of(String name) {
+		if (name.indexOf('.') >= 0) {
+			throw new IllegalArgumentException("Field paths are not supported: " + name);
+		}
+		return new FieldAccessor(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the raw value of the field, which is a boxed primitive or an
+	 * {@link ObjectReference}, or null if the object does not have the field or
+	 * the field is null.
+	 * 
+	 * @param object The owner of the field
+	 * @return The value of the field
+	 */
+	public Object get(IObject object) {
+		Field field = getField(object);
+		return field == null ? null : field.getValue();
+	}
+
+	/**
+	 * Returns whether the specified object has the field.
+	 */
+	public boolean isPresent(IObject object) {
+		return getField(object) != null;
+	}
+
+	/**
+	 * Returns the value of the field as an integer.
+	 * 
+	 * @param object The owner of the field
+	 * @return The value of the field
+	 * @throws IllegalArgumentException If the object does not have the field, or
+	 *                                  it is not an integral type
+	 */
+	public int getInt(IObject object) {
+		Object value = get(object);
+		if (!isIntegral(value)) {
+			throw notIntegral(object, value);
+		}
+		return ((Number) value).intValue();
+	}
+
+	/**
+	 * Returns the value of the field as an integer, or the specified default if
+	 * the object does not have the field or it is not an integral type.
+	 */
+	public int getInt(IObject object, int defaultValue) {
+		Object value = get(object);
+		return isIntegral(value) ? ((Number) value).intValue() : defaultValue;
+	}
+
+	/**
+	 * Returns the value of the field as a long.
+	 * 
+	 * @param object The owner of the field
+	 * @return The value of the field
+	 * @throws IllegalArgumentException If the object does not have the field, or
+	 *                                  it is not an integral type
+	 */
+	public long getLong(IObject object) {
+		Object value = get(object);
+		if (!isIntegral(value)) {
+			throw notIntegral(object, value);
+		}
+		return ((Number) value).longValue();
+	}
+
+	/**
+	 * Returns the value of the field as a long, or the specified default if the
+	 * object does not have the field or it is not an integral type.
+	 */
+	public long getLong(IObject object, long defaultValue) {
+		Object value = get(object);
+		return isIntegral(value) ? ((Number) value).longValue() : defaultValue;
+	}
+
+	/**
+	 * Returns the value of the field as a boolean, or the specified default if the
+	 * object does not have the field or it is not a boolean.
+	 */
+	public boolean getBoolean(IObject object, boolean defaultValue) {
+		Object value = get(object);
+		return value instanceof Boolean ? (Boolean) value : defaultValue;
+	}
+
+	/**
+	 * Returns the ID of the object referenced by the field, or -1 if the object
+	 * does not have the field, the field is null or it is not a reference.
+	 * 
+	 * @param object The owner of the field
+	 * @return The ID of the referenced object
+	 * @throws SnapshotException If the reference could not be resolved
+	 */
+	public int getObjectId(IObject object) throws SnapshotException {
+		Object value = get(object);
+		return value instanceof ObjectReference ? ((ObjectReference) value).getObjectId() : -1;
+	}
+
+	/**
+	 * Returns the object referenced by the field, or null if the object does not
+	 * have the field, the field is null or it is not a reference.
+	 * 
+	 * @param object The owner of the field
+	 * @return The referenced object
+	 * @throws SnapshotException If the reference could not be resolved
+	 */
+	public IObject getObject(IObject object) throws SnapshotException {
+		Object value = get(object);
+		return value instanceof ObjectReference ? ((ObjectReference) value).getObject() : null;
+	}
+
+	/**
+	 * Returns the value of the string referenced by the field, or null if the
+	 * object does not have the field, the field is null or it is not a reference.
+	 * The value is read through the snapshot's {@link StringCache}.
+	 * 
+	 * @param object The owner of the field
+	 * @return The value of the referenced string
+	 * @throws SnapshotException        If the reference could not be resolved
+	 * @throws IllegalArgumentException If the referenced object is not a string
+	 */
+	public String getString(IObject object) throws SnapshotException {
+		int objectId = getObjectId(object);
+		return objectId < 0 ? null : StringCache.of(object.getSnapshot()).get(objectId);
+	}
+
+	/**
+	 * Reads the field of each of the specified objects as an integer.
+	 * 
+	 * @param snapshot     The snapshot the object IDs belong to
+	 * @param objectIds    The IDs of the owners of the field
+	 * @param defaultValue The value used for objects that do not have the field
+	 *                     or whose field is not an integral type
+	 * @return The value of each object's field, in the order of the IDs
+	 * @throws SnapshotException If an object could not be read
+	 */
+	public int[] getInts(ISnapshot snapshot, int[] objectIds, int defaultValue) throws SnapshotException {
+		int[] values = new int[objectIds.length];
+		for (int i = 0; i < objectIds.length; i++) {
+			VisitCounter.increment();
+			values[i] = getInt(snapshot.getObject(objectIds[i]), defaultValue);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the field of each of the specified objects as a long.
+	 * 
+	 * @param snapshot     The snapshot the object IDs belong to
+	 * @param objectIds    The IDs of the owners of the field
+	 * @param defaultValue The value used for objects that do not have the field
+	 *                     or whose field is not an integral type
+	 * @return The value of each object's field, in the order of the IDs
+	 * @throws SnapshotException If an object could not be read
+	 */
+	public long[] getLongs(ISnapshot snapshot, int[] objectIds, long defaultValue) throws SnapshotException {
+		long[] values = new long[objectIds.length];
+		for (int i = 0; i < objectIds.length; i++) {
+			VisitCounter.increment();
+			values[i] = getLong(snapshot.getObject(objectIds[i]), defaultValue);
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the ID of the object referenced by the field of each of the specified
+	 * objects.
+	 * 
+	 * @param snapshot  The snapshot the object IDs belong to
+	 * @param objectIds The IDs of the owners of the field
+	 * @return The ID of each referenced object, or -1 where there is none, in the
+	 *         order of the IDs
+	 * @throws SnapshotException If an object or reference could not be read
+	 */
+	public int[] getObjectIds(ISnapshot snapshot, int[] objectIds) throws SnapshotException {
+		int[] values = new int[objectIds.length];
+		for (int i = 0; i < objectIds.length; i++) {
+			VisitCounter.increment();
+			values[i] = getObjectId(snapshot.getObject(objectIds[i]));
+		}
+		return values;
+	}
+
+	private Field getField(IObject object) {
+		if (!(object instanceof IInstance)) {
+			return null;
+		}
+
+		List<Field> fields = ((IInstance) object).getFields();
+		int index = getIndex(object.getSnapshot(), object.getClazz(), fields);
+		return index == MISSING ? null : fields.get(index);
+	}
+
+	private int getIndex(ISnapshot snapshot, IClass clazz, List<Field> fields) {
+		int classId = clazz.getObjectId();
+		ClassIndex cached = last;
+		if (cached.classId != classId || cached.snapshot.get() != snapshot) {
+			Map<Integer, Integer> classIndexes;
+			synchronized (indexes) {
+				classIndexes = indexes.computeIfAbsent(snapshot, s -> new ConcurrentHashMap<>());
+			}
+
+			Integer index = classIndexes.get(classId);
+			if (index == null) {
+				index = findIndex(fields);
+				classIndexes.put(classId, index);
+			}
+			last = cached = new ClassIndex(snapshot, classId, index);
+		}
+		return cached.index;
+	}
+
+	private int findIndex(List<Field> fields) {
+		for (int i = 0; i < fields.size(); i++) {
+			if (name.equals(fields.get(i).getName())) {
+				return i;
+			}
+		}
+		return MISSING;
+	}
+
+	private static boolean isIntegral(Object value) {
+		// @formatter:off
+		return value instanceof Integer
+				|| value instanceof Long
+				|| value instanceof Short
+				|| value instanceof Byte;
+		// @formatter:on
+	}
+
+	private IllegalArgumentException notIntegral(IObject object, Object value) {
+		return new IllegalArgumentException(value == null && !isPresent(object)
+				? "Object " + object.getTechnicalName() + " has no field " + name
+				: "Field " + name + " of object " + object.getTechnicalName() + " is not an integral type");
+	}
+
+	private static final class ClassIndex {
+
+		// Accessors are usually kept in static fields, so they must not keep snapshots alive
+		private final WeakReference<ISnapshot> snapshot;
+		private final int classId;
+		private final int index;
+
+		private ClassIndex(ISnapshot snapshot, int classId, int index) {
+			this.snapshot = new WeakReference<>(snapshot);
+			this.classId = classId;
+			this.index = index;
+		}
+
+	}
+
+}
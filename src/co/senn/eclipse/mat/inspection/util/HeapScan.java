@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.util.IProgressListener;
+import org.eclipse.mat.util.IProgressListener.OperationCanceledException;
+
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException;
+import co.senn.eclipse.mat.inspection.internal.util.BudgetExceededException.Kind;
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotConsumer;
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotIntConsumer;
+
+/**
+ * A single pass over the instances of a set of types, shared by any number of
+ * subscribers.
+ * <p>
+ * Subscribers declare the types they are interested in and are called back for
+ * each matching instance when the scan is {@linkplain #run(IProgressListener)
+ * run}. Each class is walked once and each instance is resolved at most once,
+ * however many subscriptions it matches. A subscriber that throws, or that
+ * exceeds the {@linkplain Subscription#limit(long, long) limits} of its
+ * subscription, is unsubscribed and its failure recorded, without affecting the
+ * others.
+ * 
+ * @author Andy Senn
+ */
+public final class HeapScan {
+
+	private static final int CANCELLATION_CHECK_INTERVAL = 4096;
+
+	// The deadline of a subscription is only checked once per this many callbacks
+	private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+	private final ISnapshot snapshot;
+	private final List<Subscription> subscriptions = new ArrayList<>();
+
+	/**
+	 * @param snapshot The snapshot to be scanned
+	 */
+	public HeapScan(ISnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Subscribes the specified consumer to every instance of the specified type,
+	 * including sub-types, if specified.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param consumer The consumer by which all found object instances will be
+	 *                 processed
+	 * @return The subscription, which may be used to stop receiving callbacks
+	 */
+	public Subscription subscribe(String type, boolean subtypes, SnapshotConsumer<IObject> consumer) {
+		Subscription subscription = new Subscription(type, subtypes, consumer, null);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Subscribes the specified consumer to the object ID of every instance of the
+	 * specified type, including sub-types, if specified. Instances are not resolved
+	 * on behalf of ID subscribers.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param consumer The consumer by which all found object IDs will be processed
+	 * @return The subscription, which may be used to stop receiving callbacks
+	 */
+	public Subscription subscribeIds(String type, boolean subtypes, SnapshotIntConsumer consumer) {
+		Subscription subscription = new Subscription(type, subtypes, null, consumer);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Returns all subscriptions to this scan, in the order they were made.
+	 * 
+	 * @return An unmodifiable list of subscriptions
+	 */
+	public List<Subscription> getSubscriptions() {
+		return Collections.unmodifiableList(subscriptions);
+	}
+
+	/**
+	 * Walks the instances of all subscribed types once, dispatching each to its
+	 * subscribers. The time limits of the subscriptions start now. The scan ends
+	 * early once no subscription remains active.
+	 * 
+	 * @param listener The progress listener
+	 * @throws SnapshotException          If the classes or instances could not be
+	 *                                    read from the snapshot
+	 * @throws OperationCanceledException If the listener was canceled
+	 */
+	public void run(IProgressListener listener) throws SnapshotException {
+		Map<Integer, ClassScan> classScans = new LinkedHashMap<>();
+		for (Subscription subscription : subscriptions) {
+			Collection<IClass> classes = snapshot.getClassesByName(subscription.type, subscription.subtypes);
+			if (classes != null) {
+				for (IClass clazz : classes) {
+					classScans.computeIfAbsent(clazz.getObjectId(), id -> new ClassScan(clazz)).subscribers
+							.add(subscription);
+				}
+			}
+		}
+
+		long start = System.nanoTime();
+		for (Subscription subscription : subscriptions) {
+			subscription.deadline = start + subscription.timeoutMillis * 1_000_000;
+		}
+
+		listener.beginTask("Scanning heap", classScans.size());
+
+		for (ClassScan classScan : classScans.values()) {
+			if (!isActive(classScan.subscribers)) {
+				listener.worked(1);
+				continue;
+			}
+
+			int[] objectIds = classScan.clazz.getObjectIds();
+			for (int i = 0; i < objectIds.length; i++) {
+				if (i % CANCELLATION_CHECK_INTERVAL == 0 && listener.isCanceled()) {
+					throw new OperationCanceledException();
+				}
+
+				// The remaining instances of the class are of no interest once all of its subscribers are done
+				if (!dispatch(objectIds[i], classScan.subscribers)) {
+					break;
+				}
+			}
+
+			listener.worked(1);
+		}
+
+		listener.done();
+	}
+
+	/**
+	 * Dispatches the object to each active subscriber within the limits of its
+	 * subscription, and returns whether any of them is still active.
+	 */
+	private boolean dispatch(int objectId, List<Subscription> subscribers) throws SnapshotException {
+		VisitCounter.increment();
+
+		IObject object = null;
+		boolean active = false;
+		for (Subscription subscription : subscribers) {
+			if (!subscription.active) {
+				continue;
+			}
+
+			try {
+				subscription.checkLimits();
+				if (subscription.objectConsumer != null) {
+					if (object == null) {
+						object = snapshot.getObject(objectId);
+					}
+					subscription.objectConsumer.accept(object);
+				} else {
+					subscription.idConsumer.accept(objectId);
+				}
+			} catch (SnapshotException | RuntimeException e) {
+				// Includes cancellation by the subscriber itself, which ends only its own subscription
+				subscription.failure = e;
+				subscription.active = false;
+			}
+			active |= subscription.active;
+		}
+		return active;
+	}
+
+	private static boolean isActive(List<Subscription> subscriptions) {
+		for (Subscription subscription : subscriptions) {
+			if (subscription.active) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class ClassScan {
+
+		private final IClass clazz;
+		private final List<Subscription> subscribers = new ArrayList<>();
+
+		private ClassScan(IClass clazz) {
+			this.clazz = clazz;
+		}
+
+	}
+
+	/**
+	 * A subscriber's interest in the instances of a type.
+	 * 
+	 * @author Andy Senn
+	 */
+	public static final class Subscription {
+
+		private final String type;
+		private final boolean subtypes;
+		private final SnapshotConsumer<IObject> objectConsumer;
+		private final SnapshotIntConsumer idConsumer;
+
+		private volatile boolean active = true;
+		private volatile Exception failure;
+
+		private long maxObjects;
+		private long timeoutMillis;
+		private long objects;
+		private long deadline;
+
+		private Subscription(String type, boolean subtypes, SnapshotConsumer<IObject> objectConsumer,
+				SnapshotIntConsumer idConsumer) {
+			this.type = type;
+			this.subtypes = subtypes;
+			this.objectConsumer = objectConsumer;
+			this.idConsumer = idConsumer;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public boolean isSubtypes() {
+			return subtypes;
+		}
+
+		/**
+		 * Limits the callbacks to this subscription. A subscription that exceeds
+		 * either limit is ended, and its failure is an
+		 * {@link OperationCanceledException} that describes the exceeded limit.
+		 * 
+		 * @param maxObjects    The number of objects passed to the subscriber, or 0
+		 *                      for no limit
+		 * @param timeoutMillis The time allowed from the start of the scan, or 0
+		 *                      for no limit
+		 * @return This subscription
+		 */
+		public Subscription limit(long maxObjects, long timeoutMillis) {
+			this.maxObjects = maxObjects;
+			this.timeoutMillis = timeoutMillis;
+			return this;
+		}
+
+		private void checkLimits() {
+			objects++;
+			if (maxObjects > 0 && objects > maxObjects) {
+				throw new BudgetExceededException(Kind.OBJECTS,
+						"Exceeded the budget of " + maxObjects + " visited objects");
+			}
+			if (timeoutMillis > 0 && objects % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+				throw new BudgetExceededException(Kind.TIME, "Exceeded the time budget of " + timeoutMillis + " ms");
+			}
+		}
+
+		/**
+		 * Stops any further callbacks to this subscription. May be called from
+		 * within the subscriber's own callback once it has seen enough.
+		 */
+		public void cancel() {
+			active = false;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		/**
+		 * Returns the exception thrown by the subscriber, if any, which ended the
+		 * subscription.
+		 * 
+		 * @return The failure, or null if the subscriber did not throw
+		 */
+		public Exception getFailure() {
+			return failure;
+		}
+
+	}
+
+}
@@ -17,6 +17,7 @@ package co.senn.eclipse.mat.inspection.util;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Set;
 
 import org.eclipse.mat.SnapshotException;
 import org.eclipse.mat.snapshot.ISnapshot;
@@ -25,6 +26,8 @@ import org.eclipse.mat.snapshot.model.IClass;
 import org.eclipse.mat.snapshot.model.IObject;
 import org.eclipse.mat.util.IProgressListener;
 
+import co.senn.eclipse.mat.inspection.internal.util.VisitCounter;
+
 /**
  * A collection of helper methods for querying snapshots and processing results.
  * 
@@ -53,57 +56,191 @@ public final class InspectionUtil {
 	/**
 	 * Queries the snapshot for any classes by the specified class name, including
 	 * sub-types, if specified, and invokes the provided consumer for each instance
-	 * thereof. This method also returns a boolean indicating whether any classes by
-	 * the specified criteria were found.
+	 * thereof. This method also returns a boolean indicating whether any instances
+	 * by the specified criteria were found.
+	 * <p>
+	 * Instances are resolved one at a time as they are passed to the consumer, so
+	 * memory use does not grow with the number of instances.
 	 * 
 	 * @param type     The fully-qualified name of the class
 	 * @param subtypes If true, includes sub-types of the specified class
 	 * @param snapshot The snapshot to be queried
 	 * @param consumer The consumer by which all found object instances will be
 	 *                 processed
-	 * @return A boolean indicating whether any classes by the specified criteria
+	 * @return A boolean indicating whether any instances by the specified criteria
 	 *         were found
 	 * @throws SnapshotException
-	 * @see #getObjects(String, boolean)
+	 * @see #visitObjectsOfType(String, boolean, ISnapshot, SnapshotPredicate)
 	 */
 	public static boolean forEachObjectOfType(String type, boolean subtypes, ISnapshot snapshot,
 			SnapshotConsumer<IObject> consumer) throws SnapshotException {
-		Collection<IObject> objects = getObjects(type, subtypes, snapshot);
-
-		for (IObject object : objects) {
+		return visitObjectsOfType(type, subtypes, snapshot, object -> {
 			consumer.accept(object);
-		}
+			return true;
+		}) > 0;
+	}
 
-		return objects.size() > 0;
+	/**
+	 * Queries the snapshot for any classes by the specified class name, including
+	 * sub-types, if specified, and invokes the provided consumer for the object ID
+	 * of each instance thereof. This method also returns a boolean indicating
+	 * whether any instances by the specified criteria were found.
+	 * <p>
+	 * Instances are never resolved, which makes this the cheapest way to walk the
+	 * instances of a type when only their IDs are needed.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param snapshot The snapshot to be queried
+	 * @param consumer The consumer by which all found object IDs will be processed
+	 * @return A boolean indicating whether any instances by the specified criteria
+	 *         were found
+	 * @throws SnapshotException
+	 * @see #visitObjectIdsOfType(String, boolean, ISnapshot, SnapshotIntPredicate)
+	 */
+	public static boolean forEachObjectIdOfType(String type, boolean subtypes, ISnapshot snapshot,
+			SnapshotIntConsumer consumer) throws SnapshotException {
+		return visitObjectIdsOfType(type, subtypes, snapshot, objectId -> {
+			consumer.accept(objectId);
+			return true;
+		}) > 0;
 	}
 
 	/**
 	 * Queries the snapshot for any classes by the specified class name, including
-	 * sub-types, if specified, and returns all instances thereof.
+	 * sub-types, if specified, and passes each instance thereof to the provided
+	 * visitor until it returns false.
 	 * 
 	 * @param type     The fully-qualified name of the class
 	 * @param subtypes If true, includes sub-types of the specified class
 	 * @param snapshot The snapshot to be queried
-	 * @return A collection of object instances matching the specified class name
+	 * @param visitor  The visitor by which found object instances will be
+	 *                 processed, returning false to stop the walk
+	 * @return The number of instances passed to the visitor
 	 * @throws SnapshotException
-	 * @see #forEachObjectOfType(String, boolean, SnapshotConsumer)
 	 */
-	public static Collection<IObject> getObjects(String type, boolean subtypes, ISnapshot snapshot)
-			throws SnapshotException {
+	public static int visitObjectsOfType(String type, boolean subtypes, ISnapshot snapshot,
+			SnapshotPredicate<IObject> visitor) throws SnapshotException {
+		return visitObjectIdsOfType(type, subtypes, snapshot, objectId -> visitor.test(snapshot.getObject(objectId)));
+	}
+
+	/**
+	 * Queries the snapshot for any classes by the specified class name, including
+	 * sub-types, if specified, and passes the object ID of each instance thereof to
+	 * the provided visitor until it returns false.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param snapshot The snapshot to be queried
+	 * @param visitor  The visitor by which found object IDs will be processed,
+	 *                 returning false to stop the walk
+	 * @return The number of object IDs passed to the visitor
+	 * @throws SnapshotException
+	 */
+	public static int visitObjectIdsOfType(String type, boolean subtypes, ISnapshot snapshot,
+			SnapshotIntPredicate visitor) throws SnapshotException {
 		Collection<IClass> classes = snapshot.getClassesByName(type, subtypes);
 
-		Collection<IObject> objects = new HashSet<>();
+		int visited = 0;
 		if (classes != null) {
 			for (IClass clazz : classes) {
 				for (int objectId : clazz.getObjectIds()) {
-					objects.add(snapshot.getObject(objectId));
+					visited++;
+					VisitCounter.increment();
+					if (!visitor.test(objectId)) {
+						return visited;
+					}
 				}
 			}
 		}
 
+		return visited;
+	}
+
+	/**
+	 * Returns the number of instances of the classes by the specified class name,
+	 * including sub-types, if specified. Instances are not visited, so this is
+	 * suitable for cheap threshold checks.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param snapshot The snapshot to be queried
+	 * @return The number of instances matching the specified class name
+	 * @throws SnapshotException
+	 * @see co.senn.eclipse.mat.inspection.api.IInspection#getVerdict(ISnapshot,
+	 *      IProgressListener)
+	 */
+	public static long countObjectsOfType(String type, boolean subtypes, ISnapshot snapshot)
+			throws SnapshotException {
+		Collection<IClass> classes = snapshot.getClassesByName(type, subtypes);
+
+		long count = 0;
+		if (classes != null) {
+			for (IClass clazz : classes) {
+				count += clazz.getNumberOfObjects();
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Queries the snapshot for any classes by the specified class name, including
+	 * sub-types, if specified, and returns all instances thereof.
+	 * <p>
+	 * All instances are held in memory at once. For types with many instances,
+	 * prefer {@link #forEachObjectOfType(String, boolean, ISnapshot, SnapshotConsumer)}.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param snapshot The snapshot to be queried
+	 * @return A mutable set of object instances matching the specified class name
+	 * @throws SnapshotException
+	 * @see #forEachObjectOfType(String, boolean, ISnapshot, SnapshotConsumer)
+	 */
+	public static Collection<IObject> getObjects(String type, boolean subtypes, ISnapshot snapshot)
+			throws SnapshotException {
+		Collection<IClass> classes = snapshot.getClassesByName(type, subtypes);
+
+		if (classes == null) {
+			return new HashSet<>(0);
+		}
+
+		int count = 0;
+		for (IClass clazz : classes) {
+			count += clazz.getNumberOfObjects();
+		}
+
+		// Presized, so that collecting the instances never rehashes
+		Set<IObject> objects = new HashSet<>((int) Math.min(Integer.MAX_VALUE, count / 3L * 4 + 16));
+		for (IClass clazz : classes) {
+			for (int objectId : clazz.getObjectIds()) {
+				objects.add(snapshot.getObject(objectId));
+			}
+			VisitCounter.add(clazz.getNumberOfObjects());
+		}
+
 		return objects;
 	}
 
+	/**
+	 * Queries the snapshot for any classes by the specified class name, including
+	 * sub-types, if specified, and returns the object IDs of all instances
+	 * thereof. Instances are not resolved.
+	 * 
+	 * @param type     The fully-qualified name of the class
+	 * @param subtypes If true, includes sub-types of the specified class
+	 * @param snapshot The snapshot to be queried
+	 * @return A set of object IDs matching the specified class name
+	 * @throws SnapshotException
+	 */
+	public static ObjectIdSet getObjectIds(String type, boolean subtypes, ISnapshot snapshot)
+			throws SnapshotException {
+		ObjectIdSet objectIds = new ObjectIdSet();
+		forEachObjectIdOfType(type, subtypes, snapshot, objectIds::add);
+		return objectIds;
+	}
+
 	/**
 	 * A simple, functional interface that accepts a value and returns nothing, with
 	 * the option of throwing a {@link SnapshotException}.
@@ -116,4 +253,62 @@ public final class InspectionUtil {
 		void accept(T t) throws SnapshotException;
 	}
 
+	/**
+	 * A simple, functional interface that accepts an object ID and returns
+	 * nothing, with the option of throwing a {@link SnapshotException}.
+	 * 
+	 * @author Andy Senn
+	 */
+	@FunctionalInterface
+	public static interface SnapshotIntConsumer {
+		void accept(int objectId) throws SnapshotException;
+	}
+
+	/**
+	 * A simple, functional interface that tests the object IDs of a key and its
+	 * value, with the option of throwing a {@link SnapshotException}.
+	 * 
+	 * @author Andy Senn
+	 */
+	@FunctionalInterface
+	public static interface SnapshotEntryPredicate {
+		boolean test(int keyId, int valueId) throws SnapshotException;
+	}
+
+	/**
+	 * A simple, functional interface that maps a value to another, with the option
+	 * of throwing a {@link SnapshotException}.
+	 * 
+	 * @param <T> The type of the object(s) to be mapped
+	 * @param <R> The type of the result
+	 * @author Andy Senn
+	 */
+	@FunctionalInterface
+	public static interface SnapshotFunction<T, R> {
+		R apply(T t) throws SnapshotException;
+	}
+
+	/**
+	 * A simple, functional interface that tests a value, with the option of
+	 * throwing a {@link SnapshotException}.
+	 * 
+	 * @param <T> The type of the object(s) to be tested
+	 * @author Andy Senn
+	 */
+	@FunctionalInterface
+	public static interface SnapshotPredicate<T> {
+		boolean test(T t) throws SnapshotException;
+	}
+
+	/**
+	 * A simple, functional interface that tests an object ID, with the option of
+	 * throwing a {@link SnapshotException}.
+	 * 
+	 * @author Andy Senn
+	 */
+	@FunctionalInterface
+	public static interface SnapshotIntPredicate {
+		boolean test(int objectId) throws SnapshotException;
+	}
+
 }
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.util.Arrays;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.query.IResult;
+import org.eclipse.mat.snapshot.Histogram;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.query.ObjectListResult;
+import org.eclipse.mat.util.IProgressListener;
+
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotIntConsumer;
+
+/**
+ * A set of snapshot object IDs, stored as a sparse bitmap.
+ * <p>
+ * IDs are grouped into fixed-size chunks of 65,536, and a chunk's bits are only
+ * allocated once an ID within it is added. A set costs at most one bit per
+ * object in the snapshot, and far less when its IDs are clustered, which is
+ * typical of instances of the same type. Union, intersection and difference
+ * work a word at a time.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @author Andy Senn
+ */
+public final class ObjectIdSet {
+
+	private static final int CHUNK_SHIFT = 16;
+	private static final int WORDS_PER_CHUNK = (1 << CHUNK_SHIFT) >>> 6;
+	private static final long[][] NO_CHUNKS = new long[0][];
+
+	private long[][] chunks = NO_CHUNKS;
+	private int size;
+
+	/**
+	 * Creates a set containing the specified object IDs.
+	 * 
+	 * @param objectIds The object IDs to be added
+	 * @return A new set
+	 */
+	public static ObjectIdSet of(int... objectIds) {
+		ObjectIdSet set = new ObjectIdSet();
+		set.addAll(objectIds);
+		return set;
+	}
+
+	/**
+	 * Adds the specified object ID to this set.
+	 * 
+	 * @param objectId The object ID to be added
+	 * @return A boolean indicating whether the set changed
+	 * @throws IllegalArgumentException If the object ID is negative
+	 */
+	public boolean add(int objectId) {
+		if (objectId < 0) {
+			throw new IllegalArgumentException("Invalid object ID: " + objectId);
+		}
+
+		int chunkIndex = objectId >>> CHUNK_SHIFT;
+		if (chunkIndex >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length * 2));
+		}
+
+		long[] chunk = chunks[chunkIndex];
+		if (chunk == null) {
+			chunk = chunks[chunkIndex] = new long[WORDS_PER_CHUNK];
+		}
+
+		int wordIndex = (objectId >>> 6) & (WORDS_PER_CHUNK - 1);
+		long mask = 1L << objectId;
+		if ((chunk[wordIndex] & mask) != 0) {
+			return false;
+		}
+
+		chunk[wordIndex] |= mask;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Adds all of the specified object IDs to this set.
+	 * 
+	 * @param objectIds The object IDs to be added
+	 */
+	public void addAll(int[] objectIds) {
+		for (int objectId : objectIds) {
+			add(objectId);
+		}
+	}
+
+	/**
+	 * Removes the specified object ID from this set.
+	 * 
+	 * @param objectId The object ID to be removed
+	 * @return A boolean indicating whether the set changed
+	 */
+	public boolean remove(int objectId) {
+		long[] chunk = getChunk(objectId);
+		if (chunk == null) {
+			return false;
+		}
+
+		int wordIndex = (objectId >>> 6) & (WORDS_PER_CHUNK - 1);
+		long mask = 1L << objectId;
+		if ((chunk[wordIndex] & mask) == 0) {
+			return false;
+		}
+
+		chunk[wordIndex] &= ~mask;
+		size--;
+		return true;
+	}
+
+	/**
+	 * Returns a boolean indicating whether this set contains the specified object
+	 * ID.
+	 * 
+	 * @param objectId The object ID to be tested
+	 * @return A boolean indicating whether the object ID is present
+	 */
+	public boolean contains(int objectId) {
+		long[] chunk = getChunk(objectId);
+		return chunk != null && (chunk[(objectId >>> 6) & (WORDS_PER_CHUNK - 1)] & (1L << objectId)) != 0;
+	}
+
+	/**
+	 * Returns the number of object IDs in this set.
+	 * 
+	 * @return The cardinality of this set
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds all object IDs of the specified set to this set.
+	 * 
+	 * @param other The set to be merged into this set
+	 * @return This set
+	 */
+	public ObjectIdSet or(ObjectIdSet other) {
+		if (other.chunks.length > chunks.length) {
+			chunks = Arrays.copyOf(chunks, other.chunks.length);
+		}
+
+		for (int c = 0; c < other.chunks.length; c++) {
+			long[] theirs = other.chunks[c];
+			if (theirs != null) {
+				long[] ours = chunks[c];
+				if (ours == null) {
+					chunks[c] = theirs.clone();
+				} else {
+					for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+						ours[w] |= theirs[w];
+					}
+				}
+			}
+		}
+
+		size = cardinality();
+		return this;
+	}
+
+	/**
+	 * Removes all object IDs from this set that are not in the specified set.
+	 * 
+	 * @param other The set to be intersected with this set
+	 * @return This set
+	 */
+	public ObjectIdSet and(ObjectIdSet other) {
+		for (int c = 0; c < chunks.length; c++) {
+			long[] ours = chunks[c];
+			if (ours != null) {
+				long[] theirs = c < other.chunks.length ? other.chunks[c] : null;
+				if (theirs == null) {
+					chunks[c] = null;
+				} else {
+					for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+						ours[w] &= theirs[w];
+					}
+				}
+			}
+		}
+
+		size = cardinality();
+		return this;
+	}
+
+	/**
+	 * Removes all object IDs from this set that are in the specified set.
+	 * 
+	 * @param other The set whose object IDs are to be removed
+	 * @return This set
+	 */
+	public ObjectIdSet andNot(ObjectIdSet other) {
+		for (int c = 0; c < Math.min(chunks.length, other.chunks.length); c++) {
+			long[] ours = chunks[c];
+			long[] theirs = other.chunks[c];
+			if (ours != null && theirs != null) {
+				for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+					ours[w] &= ~theirs[w];
+				}
+			}
+		}
+
+		size = cardinality();
+		return this;
+	}
+
+	/**
+	 * Returns an independent copy of this set.
+	 * 
+	 * @return A new set
+	 */
+	public ObjectIdSet copy() {
+		ObjectIdSet copy = new ObjectIdSet();
+		copy.chunks = new long[chunks.length][];
+		for (int c = 0; c < chunks.length; c++) {
+			if (chunks[c] != null) {
+				copy.chunks[c] = chunks[c].clone();
+			}
+		}
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Invokes the provided consumer for each object ID in this set, in ascending
+	 * order.
+	 * 
+	 * @param consumer The consumer by which all object IDs will be processed
+	 * @throws SnapshotException
+	 */
+	public void forEach(SnapshotIntConsumer consumer) throws SnapshotException {
+		for (int c = 0; c < chunks.length; c++) {
+			long[] chunk = chunks[c];
+			if (chunk != null) {
+				for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+					long word = chunk[w];
+					while (word != 0) {
+						consumer.accept((c << CHUNK_SHIFT) | (w << 6) | Long.numberOfTrailingZeros(word));
+						word &= word - 1;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the object IDs in this set as an array, in ascending order.
+	 * 
+	 * @return An array of object IDs
+	 */
+	public int[] toArray() {
+		int[] objectIds = new int[size];
+		int i = 0;
+		for (int c = 0; c < chunks.length; c++) {
+			long[] chunk = chunks[c];
+			if (chunk != null) {
+				for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+					long word = chunk[w];
+					while (word != 0) {
+						objectIds[i++] = (c << CHUNK_SHIFT) | (w << 6) | Long.numberOfTrailingZeros(word);
+						word &= word - 1;
+					}
+				}
+			}
+		}
+		return objectIds;
+	}
+
+	/**
+	 * Returns the objects in this set as a MAT object list, which can be
+	 * expanded to show their outbound references.
+	 * 
+	 * @param snapshot The snapshot the object IDs belong to
+	 * @return An object list result
+	 */
+	public IResult toObjectListResult(ISnapshot snapshot) {
+		return new ObjectListResult.Outbound(snapshot, toArray());
+	}
+
+	/**
+	 * Returns a class histogram of the objects in this set.
+	 * 
+	 * @param snapshot The snapshot the object IDs belong to
+	 * @param listener The progress listener
+	 * @return A histogram result
+	 * @throws SnapshotException
+	 */
+	public Histogram toHistogram(ISnapshot snapshot, IProgressListener listener) throws SnapshotException {
+		return snapshot.getHistogram(toArray(), listener);
+	}
+
+	private long[] getChunk(int objectId) {
+		int chunkIndex = objectId >>> CHUNK_SHIFT;
+		return objectId >= 0 && chunkIndex < chunks.length ? chunks[chunkIndex] : null;
+	}
+
+	private int cardinality() {
+		int cardinality = 0;
+		for (long[] chunk : chunks) {
+			if (chunk != null) {
+				for (long word : chunk) {
+					cardinality += Long.bitCount(word);
+				}
+			}
+		}
+		return cardinality;
+	}
+
+}
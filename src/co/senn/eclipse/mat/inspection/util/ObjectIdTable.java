@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.query.Column;
+import org.eclipse.mat.query.IContextObject;
+import org.eclipse.mat.query.IResultTable;
+import org.eclipse.mat.query.ResultMetaData;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IObject;
+
+import co.senn.eclipse.mat.inspection.util.InspectionUtil.SnapshotFunction;
+
+/**
+ * A table with one row per object ID, whose cells are computed from the object
+ * only when they are displayed. Building the table costs only its array of
+ * IDs, so an inspection can report a very large number of objects, and Memory
+ * Analyzer resolves only the rows that are actually shown.
+ * 
+ * <pre>
+ * new ObjectIdTable(snapshot, connectionIds)
+ *     .addColumn("Connection", String.class, IObject::getDisplayName)
+ *     .addColumn("Retained Heap", Long.class, IObject::getRetainedHeapSize);
+ * </pre>
+ * 
+ * Each row's context is its object, so the usual object context menus are
+ * available.
+ * 
+ * @author Andy Senn
+ */
+public final class ObjectIdTable implements IResultTable {
+
+	private final ISnapshot snapshot;
+	private final int[] objectIds;
+	private final List<Column> columns = new ArrayList<>();
+	private final List<SnapshotFunction<IObject, ?>> accessors = new ArrayList<>();
+
+	// The cells of a row are read one after another, so the last object is kept
+	private int lastRow = -1;
+	private IObject lastObject;
+
+	/**
+	 * @param snapshot  The snapshot the object IDs belong to
+	 * @param objectIds The object ID of each row; the array is not copied
+	 */
+	public ObjectIdTable(ISnapshot snapshot, int[] objectIds) {
+		this.snapshot = snapshot;
+		this.objectIds = objectIds;
+	}
+
+	/**
+	 * @param snapshot  The snapshot the object IDs belong to
+	 * @param objectIds The object IDs of the rows, in ascending order
+	 */
+	public ObjectIdTable(ISnapshot snapshot, ObjectIdSet objectIds) {
+		this(snapshot, objectIds.toArray());
+	}
+
+	/**
+	 * Adds a column whose cells are computed from each row's object.
+	 * 
+	 * @param label    The column label
+	 * @param type     The type of the values, which determines how they are
+	 *                 aligned and sorted
+	 * @param accessor The function computing a cell from the row's object
+	 * @return This table
+	 */
+	public ObjectIdTable addColumn(String label, Class<?> type, SnapshotFunction<IObject, ?> accessor) {
+		columns.add(new Column(label, type));
+		accessors.add(accessor);
+		return this;
+	}
+
+	/**
+	 * Returns the object ID of the specified row.
+	 */
+	public int getObjectId(int rowId) {
+		return objectIds[rowId];
+	}
+
+	@Override
+	public ResultMetaData getResultMetaData() {
+		return null;
+	}
+
+	@Override
+	public Column[] getColumns() {
+		return columns.toArray(new Column[columns.size()]);
+	}
+
+	@Override
+	public int getRowCount() {
+		return objectIds.length;
+	}
+
+	@Override
+	public Object getRow(int rowId) {
+		return rowId;
+	}
+
+	@Override
+	public Object getColumnValue(Object row, int columnIndex) {
+		try {
+			return accessors.get(columnIndex).apply(getObject((Integer) row));
+		} catch (SnapshotException e) {
+			throw new IllegalStateException("Unable to read object " + objectIds[(Integer) row], e);
+		}
+	}
+
+	@Override
+	public IContextObject getContext(Object row) {
+		int objectId = objectIds[(Integer) row];
+		return () -> objectId;
+	}
+
+	private synchronized IObject getObject(int row) throws SnapshotException {
+		if (row != lastRow) {
+			lastObject = snapshot.getObject(objectIds[row]);
+			lastRow = row;
+		}
+		return lastObject;
+	}
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IClass;
+
+/**
+ * A sorted index of the names of all classes in a snapshot, used to answer
+ * package queries with a binary search rather than a scan of every class.
+ * <p>
+ * The index is built once per snapshot, on first use, and shared thereafter.
+ * 
+ * @author Andy Senn
+ */
+public final class PackageIndex {
+
+	private static final Map<ISnapshot, PackageIndex> INDEXES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final String[] classNames;
+
+	private PackageIndex(String[] classNames) {
+		this.classNames = classNames;
+	}
+
+	/**
+	 * Returns the index of the specified snapshot, building it if necessary.
+	 * 
+	 * @param snapshot The snapshot to be indexed
+	 * @return The index of the snapshot
+	 * @throws SnapshotException
+	 */
+	public static PackageIndex of(ISnapshot snapshot) throws SnapshotException {
+		PackageIndex index = INDEXES.get(snapshot);
+		if (index == null) {
+			synchronized (INDEXES) {
+				index = INDEXES.get(snapshot);
+				if (index == null) {
+					index = build(snapshot);
+					INDEXES.put(snapshot, index);
+				}
+			}
+		}
+		return index;
+	}
+
+	private static PackageIndex build(ISnapshot snapshot) throws SnapshotException {
+		Collection<IClass> classes = snapshot.getClasses();
+
+		String[] classNames = new String[classes.size()];
+		int i = 0;
+		for (IClass clazz : classes) {
+			classNames[i++] = clazz.getName();
+		}
+		Arrays.sort(classNames);
+
+		return new PackageIndex(classNames);
+	}
+
+	/**
+	 * Returns a boolean indicating whether the snapshot contains any classes in
+	 * the specified package or its subpackages.
+	 * 
+	 * @param packageName The name of the package to be queried
+	 * @return A boolean indicating whether any classes for the specified package
+	 *         were found
+	 */
+	public boolean isPackagePresent(String packageName) {
+		return hasClassWithPrefix(toPrefix(packageName));
+	}
+
+	/**
+	 * Returns a boolean indicating whether the name of any class in the snapshot
+	 * starts with the specified prefix.
+	 * 
+	 * @param prefix The prefix to be queried
+	 * @return A boolean indicating whether any class names begin with the prefix
+	 */
+	public boolean hasClassWithPrefix(String prefix) {
+		int index = lowerBound(prefix);
+		return index < classNames.length && classNames[index].startsWith(prefix);
+	}
+
+	/**
+	 * Returns the number of classes in the specified package, including those in
+	 * its subpackages, if specified. Classes loaded by more than one class loader
+	 * are counted once per class loader.
+	 * 
+	 * @param packageName The name of the package to be queried, or an empty String
+	 *                    for the default package
+	 * @param subpackages If true, includes classes in subpackages
+	 * @return The number of classes in the package
+	 */
+	public int getClassCount(String packageName, boolean subpackages) {
+		String prefix = toPrefix(packageName);
+		int from = lowerBound(prefix);
+		int to = upperBound(prefix);
+
+		if (subpackages) {
+			return to - from;
+		}
+
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			if (classNames[i].indexOf('.', prefix.length()) < 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the names of the immediate subpackages of the specified package that
+	 * contain at least one class, in sorted order.
+	 * 
+	 * @param packageName The name of the package to be queried, or an empty String
+	 *                    for the default package
+	 * @return The fully-qualified names of the subpackages
+	 */
+	public List<String> getSubpackages(String packageName) {
+		String prefix = toPrefix(packageName);
+		int to = upperBound(prefix);
+
+		List<String> subpackages = new ArrayList<>();
+		int i = lowerBound(prefix);
+		while (i < to) {
+			int dot = classNames[i].indexOf('.', prefix.length());
+			if (dot < 0) {
+				i++;
+			} else {
+				// Skip over every class in the subpackage at once
+				String subpackage = classNames[i].substring(0, dot);
+				subpackages.add(subpackage);
+				i = upperBound(subpackage + '.');
+			}
+		}
+		return subpackages;
+	}
+
+	private static String toPrefix(String packageName) {
+		return packageName.isEmpty() || packageName.endsWith(".") ? packageName : packageName + '.';
+	}
+
+	/**
+	 * Returns the position following the last class name that starts with the
+	 * specified prefix.
+	 */
+	private int upperBound(String prefix) {
+		if (prefix.isEmpty()) {
+			return classNames.length;
+		}
+
+		// The smallest string greater than every string with the prefix
+		char last = prefix.charAt(prefix.length() - 1);
+		return lowerBound(prefix.substring(0, prefix.length() - 1) + (char) (last + 1));
+	}
+
+	/**
+	 * Returns the position of the first class name that is not less than the
+	 * specified key.
+	 */
+	private int lowerBound(String key) {
+		int index = Arrays.binarySearch(classNames, key);
+		if (index < 0) {
+			return -index - 1;
+		}
+
+		// Step back to the first of any duplicate names
+		while (index > 0 && classNames[index - 1].equals(key)) {
+			index--;
+		}
+		return index;
+	}
+
+}
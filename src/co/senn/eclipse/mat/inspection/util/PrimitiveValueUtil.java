@@ -15,6 +15,7 @@
  */
 package co.senn.eclipse.mat.inspection.util;
 
+import java.nio.charset.Charset;
 import java.util.function.Consumer;
 
 import org.eclipse.mat.SnapshotException;
@@ -29,12 +30,18 @@ import org.eclipse.mat.snapshot.model.IPrimitiveArray;
  */
 public final class PrimitiveValueUtil {
 
+	// Long.MIN_VALUE can only be parsed from its own string, so it doubles as the failure marker
+	private static final long NOT_A_LONG = Long.MIN_VALUE;
+	private static final String NOT_A_LONG_STRING = Long.toString(Long.MIN_VALUE);
+
 	private PrimitiveValueUtil() {
 	}
 
 	/**
 	 * Parses and returns the string representation of the specified field as an
-	 * integer, if possible.
+	 * integer, if possible. Integral values are returned without being parsed.
+	 * <p>
+	 * When reading the same field of many objects, prefer a {@link FieldAccessor}.
 	 * 
 	 * @param object The owner of the member field to be parsed
 	 * @param field  The name of the member field to be parsed
@@ -45,7 +52,10 @@ public final class PrimitiveValueUtil {
 	 */
 	public static int getInt(IObject object, String field) throws SnapshotException {
 		Object obj = object.resolveValue(field);
-		return Integer.valueOf(String.valueOf(obj));
+		if (obj instanceof Integer || obj instanceof Short || obj instanceof Byte) {
+			return ((Number) obj).intValue();
+		}
+		return Integer.parseInt(String.valueOf(obj));
 	}
 
 	/**
@@ -68,8 +78,13 @@ public final class PrimitiveValueUtil {
 
 	/**
 	 * Extracts the value of the member field by the specified name from the
-	 * specified object as a byte array and converts it to a String. If the member
-	 * field does not exist, returns an empty String.
+	 * specified object as a byte array and converts it to a String using the
+	 * platform's default charset. If the member field does not exist, returns an
+	 * empty String.
+	 * <p>
+	 * To read the value of a {@code java.lang.String}, use
+	 * {@link StringValueUtil#getString(IObject)}, which understands compact
+	 * strings.
 	 * 
 	 * @param object The owner of the member field to be extracted
 	 * @param field  The name of the member field to be extracted
@@ -83,6 +98,29 @@ public final class PrimitiveValueUtil {
 		return new String(getByteArray(object, field));
 	}
 
+	/**
+	 * Extracts at most the specified number of bytes from the start of the member
+	 * field by the specified name of the specified object, and decodes them using
+	 * the specified charset. Only those bytes are read from the array. If the
+	 * member field does not exist, returns an empty String.
+	 * 
+	 * @param object   The owner of the member field to be extracted
+	 * @param field    The name of the member field to be extracted
+	 * @param charset  The charset of the bytes
+	 * @param maxBytes The maximum number of bytes to be decoded
+	 * @return The value of the specified field as a String
+	 * @throws SnapshotException        If a SnapshotException is thrown when
+	 *                                  resolving the field
+	 * @throws IllegalArgumentException If the field by the specified name is not a
+	 *                                  {@linkplain IPrimitiveArray primitive array}
+	 */
+	public static String getByteArrayAsString(IObject object, String field, Charset charset, int maxBytes)
+			throws SnapshotException {
+		IPrimitiveArray array = getIPrimitiveArray(object, field);
+		int length = array == null ? 0 : Math.min(array.getLength(), Math.max(0, maxBytes));
+		return length == 0 ? "" : new String((byte[]) array.getValueArray(0, length), charset);
+	}
+
 	/**
 	 * Extracts the value of the member field by the specified name from the
 	 * specified object as a char array. If the member field does not exist, returns
@@ -118,6 +156,27 @@ public final class PrimitiveValueUtil {
 		return new String(getCharArray(object, field));
 	}
 
+	/**
+	 * Extracts at most the specified number of characters from the start of the
+	 * member field by the specified name of the specified object. Only those
+	 * characters are read from the array. If the member field does not exist,
+	 * returns an empty String.
+	 * 
+	 * @param object   The owner of the member field to be extracted
+	 * @param field    The name of the member field to be extracted
+	 * @param maxChars The maximum number of characters to be returned
+	 * @return The value of the specified field as a String
+	 * @throws SnapshotException        If a SnapshotException is thrown when
+	 *                                  resolving the field
+	 * @throws IllegalArgumentException If the field by the specified name is not a
+	 *                                  {@linkplain IPrimitiveArray primitive array}
+	 */
+	public static String getCharArrayAsString(IObject object, String field, int maxChars) throws SnapshotException {
+		IPrimitiveArray array = getIPrimitiveArray(object, field);
+		int length = array == null ? 0 : Math.min(array.getLength(), Math.max(0, maxChars));
+		return length == 0 ? "" : new String((char[]) array.getValueArray(0, length));
+	}
+
 	/**
 	 * Attempts to parse the provided Object as an Integer. If successful, the
 	 * Integer value is passed to the specified consumer. This method also returns a
@@ -130,14 +189,19 @@ public final class PrimitiveValueUtil {
 	 *         an Integer
 	 */
 	public static boolean tryParseInt(Object object, Consumer<Integer> ifInt) {
-		try {
-			ifInt.accept(Integer.valueOf(String.valueOf(object)));
-		} catch (Exception e) {
+		if (object instanceof Integer || object instanceof Short || object instanceof Byte) {
+			ifInt.accept(((Number) object).intValue());
+			return true;
+		}
+
+		long value = parseLong(String.valueOf(object));
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
 			return false;
 		}
+		ifInt.accept((int) value);
 		return true;
 	}
-	
+
 	/**
 	 * Attempts to parse the provided Object as a Long. If successful, the
 	 * Long value is passed to the specified consumer. This method also returns a
@@ -150,14 +214,57 @@ public final class PrimitiveValueUtil {
 	 *         a Long
 	 */
 	public static boolean tryParseLong(Object object, Consumer<Long> ifLong) {
-		try {
-			ifLong.accept(Long.valueOf(String.valueOf(object)));
-		} catch (Exception e) {
+		if (object instanceof Long || object instanceof Integer || object instanceof Short
+				|| object instanceof Byte) {
+			ifLong.accept(((Number) object).longValue());
+			return true;
+		}
+
+		String string = String.valueOf(object);
+		long value = parseLong(string);
+		if (value == NOT_A_LONG && !string.equals(NOT_A_LONG_STRING)) {
 			return false;
 		}
+		ifLong.accept(value);
 		return true;
 	}
 
+	/**
+	 * Parses a decimal long without throwing, returning {@link #NOT_A_LONG} if the
+	 * string is not one. Failed parses are common when probing values, and
+	 * exceptions are expensive.
+	 */
+	private static long parseLong(String string) {
+		int length = string.length();
+		int i = length > 0 && (string.charAt(0) == '-' || string.charAt(0) == '+') ? 1 : 0;
+		if (i == length) {
+			return NOT_A_LONG;
+		}
+
+		boolean negative = string.charAt(0) == '-';
+		long value = 0;
+		for (; i < length; i++) {
+			int digit = string.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return NOT_A_LONG;
+			}
+
+			// Accumulate negatively, since the magnitude of Long.MIN_VALUE is one larger than Long.MAX_VALUE
+			if (value < (Long.MIN_VALUE + digit) / 10) {
+				return NOT_A_LONG;
+			}
+			value = value * 10 - digit;
+		}
+
+		if (!negative) {
+			if (value == Long.MIN_VALUE) {
+				return NOT_A_LONG;
+			}
+			value = -value;
+		}
+		return value;
+	}
+
 	/**
 	 * Extracts the value of the member field by the specified name from the
 	 * specified object as an IPrimitiveArray. If the member field does not exist,
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.util.IProgressListener;
+
+/**
+ * Answers retained size questions for all inspections of a snapshot, and
+ * remembers the answers for groups of objects, which are expensive to compute.
+ * <p>
+ * The retained size of a single object is read from the dominator tree that
+ * Memory Analyzer builds when parsing, which is exact and cheap. The retained
+ * size of a group of objects can be computed in two ways:
+ * <ul>
+ * <li>{@link Mode#EXACT} computes the group's retained set, which walks a
+ * large part of the object graph</li>
+ * <li>{@link Mode#APPROXIMATE} adds up the dominator tree sizes of the objects
+ * that are not dominated by other objects in the group, which is fast, but is a
+ * lower bound: objects kept alive only by several members together are not
+ * counted</li>
+ * </ul>
+ * Groups are remembered regardless of their order or duplicates, so
+ * inspections asking about the same objects pay only once.
+ * 
+ * @author Andy Senn
+ */
+public final class RetainedSizeCache {
+
+	/**
+	 * How the retained size of a group of objects is computed.
+	 */
+	public enum Mode {
+		EXACT, APPROXIMATE
+	}
+
+	private static final Map<ISnapshot, RetainedSizeCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	// Groups are kept until they hold this many object IDs in total
+	private static final long MAX_CACHED_IDS = 4L << 20;
+
+	// Caches are kept in a weak map by snapshot, so they must not keep their snapshot alive
+	private final WeakReference<ISnapshot> snapshot;
+	private final LinkedHashMap<Group, Long> groups = new LinkedHashMap<>(16, 0.75f, true);
+	private long cachedIds;
+
+	private RetainedSizeCache(ISnapshot snapshot) {
+		this.snapshot = new WeakReference<>(snapshot);
+	}
+
+	/**
+	 * Returns the shared cache of the specified snapshot, creating it if
+	 * necessary.
+	 * 
+	 * @param snapshot The snapshot to be queried
+	 * @return The cache of the snapshot
+	 */
+	public static RetainedSizeCache of(ISnapshot snapshot) {
+		synchronized (CACHES) {
+			return CACHES.computeIfAbsent(snapshot, RetainedSizeCache::new);
+		}
+	}
+
+	/**
+	 * Returns the exact retained size of the specified object.
+	 * 
+	 * @param objectId The ID of the object
+	 * @return The retained size, in bytes
+	 * @throws SnapshotException
+	 */
+	public long getRetainedSize(int objectId) throws SnapshotException {
+		return getSnapshot().getRetainedHeapSize(objectId);
+	}
+
+	/**
+	 * Returns the exact retained size of each of the specified objects. The
+	 * objects are looked up in ascending order, which reads the index files
+	 * sequentially.
+	 * 
+	 * @param objectIds The IDs of the objects
+	 * @return The retained size of each object, in bytes, in the order of the IDs
+	 * @throws SnapshotException
+	 */
+	public long[] getRetainedSizes(int[] objectIds) throws SnapshotException {
+		long[] sortedKeys = new long[objectIds.length];
+		for (int i = 0; i < objectIds.length; i++) {
+			// Sort the IDs together with their positions
+			sortedKeys[i] = (long) objectIds[i] << 32 | i;
+		}
+		Arrays.sort(sortedKeys);
+
+		ISnapshot snapshot = getSnapshot();
+		long[] sizes = new long[objectIds.length];
+		int previousId = -1;
+		long previousSize = 0;
+		for (long key : sortedKeys) {
+			int objectId = (int) (key >>> 32);
+			if (objectId != previousId) {
+				previousSize = snapshot.getRetainedHeapSize(objectId);
+				previousId = objectId;
+			}
+			sizes[(int) key] = previousSize;
+		}
+		return sizes;
+	}
+
+	/**
+	 * Returns the retained size of the specified group of objects, computing it
+	 * if it has not been computed before in the specified mode.
+	 * 
+	 * @param objectIds The IDs of the objects in the group; the array is not
+	 *                  modified
+	 * @param mode      How the size is computed
+	 * @param listener  The progress listener
+	 * @return The retained size of the group, in bytes
+	 * @throws SnapshotException
+	 */
+	public long getRetainedSize(int[] objectIds, Mode mode, IProgressListener listener) throws SnapshotException {
+		Group group = new Group(mode, objectIds);
+		synchronized (groups) {
+			Long size = groups.get(group);
+			if (size != null) {
+				return size;
+			}
+		}
+
+		ISnapshot snapshot = getSnapshot();
+		long size;
+		if (mode == Mode.EXACT) {
+			size = snapshot.getHeapSize(snapshot.getRetainedSet(group.objectIds, listener));
+		} else {
+			size = snapshot.getMinRetainedSize(group.objectIds, listener);
+		}
+
+		synchronized (groups) {
+			if (groups.put(group, size) == null) {
+				cachedIds += group.objectIds.length;
+			}
+
+			Iterator<Group> eldest = groups.keySet().iterator();
+			while (cachedIds > MAX_CACHED_IDS && eldest.hasNext()) {
+				cachedIds -= eldest.next().objectIds.length;
+				eldest.remove();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the retained size of the objects in the specified set.
+	 * 
+	 * @see #getRetainedSize(int[], Mode, IProgressListener)
+	 */
+	public long getRetainedSize(ObjectIdSet objectIds, Mode mode, IProgressListener listener)
+			throws SnapshotException {
+		return getRetainedSize(objectIds.toArray(), mode, listener);
+	}
+
+	private ISnapshot getSnapshot() {
+		ISnapshot snapshot = this.snapshot.get();
+		if (snapshot == null) {
+			throw new IllegalStateException("The snapshot of the retained size cache has been disposed");
+		}
+		return snapshot;
+	}
+
+	/**
+	 * A group of object IDs, sorted and without duplicates, so that equal groups
+	 * are recognized regardless of how they were given.
+	 */
+	private static final class Group {
+
+		private final Mode mode;
+		private final int[] objectIds;
+		private final int hashCode;
+
+		private Group(Mode mode, int[] objectIds) {
+			int[] sorted = objectIds.clone();
+			Arrays.sort(sorted);
+
+			int unique = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (i == 0 || sorted[i] != sorted[i - 1]) {
+					sorted[unique++] = sorted[i];
+				}
+			}
+
+			this.mode = mode;
+			this.objectIds = unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+			this.hashCode = 31 * mode.hashCode() + Arrays.hashCode(this.objectIds);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Group)) {
+				return false;
+			}
+			Group other = (Group) obj;
+			return mode == other.mode && hashCode == other.hashCode && Arrays.equals(objectIds, other.objectIds);
+		}
+
+	}
+
+}
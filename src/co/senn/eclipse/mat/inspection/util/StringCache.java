@@ -0,0 +1,286 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.IObject;
+
+import co.senn.eclipse.mat.inspection.preferences.InspectionsPreferenceHelper;
+
+/**
+ * A cache of decoded {@code java.lang.String} values, keyed by object ID and
+ * shared by all inspections of a snapshot, so that strings that are read again
+ * and again, such as map keys, are only decoded once.
+ * <p>
+ * The cache is bounded by an estimate of the memory its values use, and evicts
+ * the least recently used values first. It is split into segments by object
+ * ID, so that inspections running in parallel rarely wait for each other.
+ * Strings larger than a fraction of a segment are decoded but never cached, so
+ * a single large string cannot flush the cache.
+ * 
+ * @author Andy Senn
+ */
+public final class StringCache {
+
+	/**
+	 * The maximum memory used by each snapshot's cache, in megabytes, when none
+	 * is configured
+	 */
+	public static final long DEFAULT_MAX_MEGABYTES = 64;
+
+	private static final Map<ISnapshot, StringCache> CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private static final int SEGMENTS = 16;
+
+	// An estimate of the memory used by a cached string besides its characters: the string, its array and the entry
+	private static final long ENTRY_OVERHEAD = 104;
+
+	// Caches are kept in a weak map by snapshot, so they must not keep their snapshot alive
+	private final WeakReference<ISnapshot> snapshot;
+	private final long maxBytes;
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param snapshot The snapshot the strings belong to
+	 * @param maxBytes The maximum estimated memory used by cached values
+	 */
+	public StringCache(ISnapshot snapshot, long maxBytes) {
+		this.snapshot = new WeakReference<>(snapshot);
+		this.maxBytes = Math.max(0, maxBytes);
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = new Segment(this.maxBytes / SEGMENTS);
+		}
+	}
+
+	/**
+	 * Returns the shared cache of the specified snapshot, creating it with the
+	 * configured maximum size if necessary.
+	 * 
+	 * @param snapshot The snapshot the strings belong to
+	 * @return The cache of the snapshot
+	 */
+	public static StringCache of(ISnapshot snapshot) {
+		StringCache cache = CACHES.get(snapshot);
+		if (cache == null) {
+			synchronized (CACHES) {
+				cache = CACHES.get(snapshot);
+				if (cache == null) {
+					long maxMegabytes = InspectionsPreferenceHelper
+							.getLong(InspectionsPreferenceHelper.STRING_CACHE_SIZE, DEFAULT_MAX_MEGABYTES);
+					cache = new StringCache(snapshot, maxMegabytes << 20);
+					CACHES.put(snapshot, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the value of the string by the specified object ID, decoding it if
+	 * it is not cached.
+	 * 
+	 * @param objectId The ID of a {@code java.lang.String} object
+	 * @return The value of the string
+	 * @throws SnapshotException        If the string could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public String get(int objectId) throws SnapshotException {
+		Segment segment = segments[(objectId ^ objectId >>> 16) & (SEGMENTS - 1)];
+		String value = segment.get(objectId);
+		if (value != null) {
+			hits.increment();
+			return value;
+		}
+
+		misses.increment();
+		value = StringValueUtil.getString(getSnapshot().getObject(objectId));
+		evictions.add(segment.put(objectId, value));
+		return value;
+	}
+
+	private ISnapshot getSnapshot() {
+		ISnapshot snapshot = this.snapshot.get();
+		if (snapshot == null) {
+			throw new IllegalStateException("The snapshot of the string cache has been disposed");
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Returns the value of the specified string, decoding it if it is not cached.
+	 * 
+	 * @param string A {@code java.lang.String} object
+	 * @return The value of the string
+	 * @throws SnapshotException        If the string could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public String get(IObject string) throws SnapshotException {
+		return get(string.getObjectId());
+	}
+
+	/**
+	 * Removes all values from the cache. The statistics are kept.
+	 */
+	public void clear() {
+		for (Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public Statistics getStatistics() {
+		long size = 0;
+		long bytes = 0;
+		for (Segment segment : segments) {
+			synchronized (segment) {
+				size += segment.values.size();
+				bytes += segment.bytes;
+			}
+		}
+		return new Statistics(hits.sum(), misses.sum(), evictions.sum(), size, bytes, maxBytes);
+	}
+
+	private static long estimateBytes(String value) {
+		return ENTRY_OVERHEAD + 2L * value.length();
+	}
+
+	private static final class Segment {
+
+		private final long maxBytes;
+		private final LinkedHashMap<Integer, String> values = new LinkedHashMap<>(16, 0.75f, true);
+		private long bytes;
+
+		private Segment(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		private synchronized String get(int objectId) {
+			return values.get(objectId);
+		}
+
+		/**
+		 * Adds the value and returns the number of values evicted to make room.
+		 */
+		private synchronized int put(int objectId, String value) {
+			long size = estimateBytes(value);
+			if (size > maxBytes / 8) {
+				return 0;
+			}
+
+			String previous = values.put(objectId, value);
+			bytes += size - (previous == null ? 0 : estimateBytes(previous));
+
+			int evicted = 0;
+			Iterator<String> eldest = values.values().iterator();
+			while (bytes > maxBytes && eldest.hasNext()) {
+				bytes -= estimateBytes(eldest.next());
+				eldest.remove();
+				evicted++;
+			}
+			return evicted;
+		}
+
+		private synchronized void clear() {
+			values.clear();
+			bytes = 0;
+		}
+
+	}
+
+	/**
+	 * A point-in-time view of the effectiveness of a {@link StringCache}.
+	 */
+	public static final class Statistics {
+
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long size;
+		private final long bytes;
+		private final long maxBytes;
+
+		private Statistics(long hits, long misses, long evictions, long size, long bytes, long maxBytes) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.size = size;
+			this.bytes = bytes;
+			this.maxBytes = maxBytes;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getRequests() {
+			return hits + misses;
+		}
+
+		/**
+		 * Returns the fraction of requests answered from the cache, or 0 if there
+		 * were none.
+		 */
+		public double getHitRate() {
+			return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+		}
+
+		public long getEvictions() {
+			return evictions;
+		}
+
+		/**
+		 * Returns the number of cached values.
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * Returns the estimated memory used by the cached values.
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		public long getMaxBytes() {
+			return maxBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d requests, %.1f%% hits, %d evictions, %d strings using %d of %d KB",
+					getRequests(), getHitRate() * 100, evictions, size, bytes >> 10, maxBytes >> 10);
+		}
+
+	}
+
+}
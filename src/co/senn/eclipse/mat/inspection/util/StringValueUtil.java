@@ -0,0 +1,294 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.mat.SnapshotException;
+import org.eclipse.mat.snapshot.ISnapshot;
+import org.eclipse.mat.snapshot.model.Field;
+import org.eclipse.mat.snapshot.model.IClass;
+import org.eclipse.mat.snapshot.model.IObject;
+import org.eclipse.mat.snapshot.model.IPrimitiveArray;
+
+/**
+ * A collection of helper methods for reading {@code java.lang.String} objects
+ * in a heap dump without copying their whole backing array.
+ * <p>
+ * Only the requested range of the backing array is read, so checking a prefix
+ * or reading the first characters of a very long string costs no more than the
+ * characters involved. Both string layouts are understood: a {@code char[]}
+ * value, with an offset and count in old JVMs, and the compact {@code byte[]}
+ * value of Java 9 and later, which is decoded as Latin-1 or UTF-16 according to
+ * the string's {@code coder}.
+ * 
+ * @author Andy Senn
+ */
+public final class StringValueUtil {
+
+	private static final FieldAccessor VALUE = FieldAccessor.of("value");
+	private static final FieldAccessor CODER = FieldAccessor.of("coder");
+	private static final FieldAccessor OFFSET = FieldAccessor.of("offset");
+	private static final FieldAccessor COUNT = FieldAccessor.of("count");
+	private static final FieldAccessor HASH = FieldAccessor.of("hash");
+	private static final FieldAccessor HASH_IS_ZERO = FieldAccessor.of("hashIsZero");
+
+	private static final byte CODER_UTF16 = 1;
+	private static final int CHUNK_SIZE = 8192;
+
+	// The byte order of UTF-16 string values is that of the dumped JVM's platform
+	private static final Map<ISnapshot, Integer> HI_BYTE_SHIFTS = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private StringValueUtil() {
+	}
+
+	/**
+	 * Returns the value of the specified string.
+	 * 
+	 * @param string A {@code java.lang.String} object
+	 * @return The value of the string
+	 * @throws SnapshotException        If the backing array could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public static String getString(IObject string) throws SnapshotException {
+		return getString(string, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns at most the specified number of characters from the start of the
+	 * specified string. Only those characters are read from the backing array.
+	 * 
+	 * @param string    A {@code java.lang.String} object
+	 * @param maxLength The maximum number of characters to be returned
+	 * @return The first characters of the string
+	 * @throws SnapshotException        If the backing array could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public static String getString(IObject string, int maxLength) throws SnapshotException {
+		StringValue value = StringValue.of(string);
+		int length = Math.min(value.length, Math.max(0, maxLength));
+		char[] chars = new char[length];
+		value.read(0, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the number of characters in the specified string, without reading
+	 * its backing array.
+	 * 
+	 * @param string A {@code java.lang.String} object
+	 * @return The length of the string
+	 * @throws SnapshotException        If the backing array could not be resolved
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public static int getLength(IObject string) throws SnapshotException {
+		return StringValue.of(string).length;
+	}
+
+	/**
+	 * Returns whether the specified string starts with the specified prefix. Only
+	 * as many characters as the prefix has are read.
+	 * 
+	 * @param string A {@code java.lang.String} object
+	 * @param prefix The prefix to be tested
+	 * @return A boolean indicating whether the string starts with the prefix
+	 * @throws SnapshotException        If the backing array could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public static boolean startsWith(IObject string, String prefix) throws SnapshotException {
+		StringValue value = StringValue.of(string);
+		return value.length >= prefix.length() && value.regionMatches(prefix);
+	}
+
+	/**
+	 * Returns whether the specified string has the same characters as the
+	 * specified value. Strings of a different length are rejected without reading
+	 * their backing array.
+	 * 
+	 * @param string A {@code java.lang.String} object
+	 * @param other  The value to be compared
+	 * @return A boolean indicating whether the string equals the value
+	 * @throws SnapshotException        If the backing array could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public static boolean contentEquals(IObject string, CharSequence other) throws SnapshotException {
+		StringValue value = StringValue.of(string);
+		return value.length == other.length() && value.regionMatches(other);
+	}
+
+	/**
+	 * Returns the hash code of the specified string, as computed by
+	 * {@link String#hashCode()}. The hash cached in the string is used if it was
+	 * computed before the dump was taken; otherwise it is computed a chunk at a
+	 * time, without creating the string.
+	 * 
+	 * @param string A {@code java.lang.String} object
+	 * @return The hash code of the string
+	 * @throws SnapshotException        If the backing array could not be read
+	 * @throws IllegalArgumentException If the object is not a string
+	 */
+	public static int hashCode(IObject string) throws SnapshotException {
+		int cached = HASH.getInt(string, 0);
+		if (cached != 0 || HASH_IS_ZERO.getBoolean(string, false)) {
+			return cached;
+		}
+
+		StringValue value = StringValue.of(string);
+		char[] chunk = new char[Math.min(value.length, CHUNK_SIZE)];
+		int hash = 0;
+		for (int from = 0; from < value.length; from += chunk.length) {
+			int count = Math.min(chunk.length, value.length - from);
+			value.read(from, count, chunk, 0);
+			for (int i = 0; i < count; i++) {
+				hash = 31 * hash + chunk[i];
+			}
+		}
+		return hash;
+	}
+
+	private static int getHiByteShift(ISnapshot snapshot) throws SnapshotException {
+		Integer shift = HI_BYTE_SHIFTS.get(snapshot);
+		if (shift == null) {
+			// Little-endian platforms are by far the most common, so assume one unless the JVM says otherwise
+			shift = 0;
+			Collection<IClass> classes = snapshot.getClassesByName("java.lang.StringUTF16", false);
+			if (classes != null) {
+				for (IClass clazz : classes) {
+					for (Field field : clazz.getStaticFields()) {
+						if ("HI_BYTE_SHIFT".equals(field.getName()) && field.getValue() instanceof Integer) {
+							shift = (Integer) field.getValue();
+						}
+					}
+				}
+			}
+			HI_BYTE_SHIFTS.put(snapshot, shift);
+		}
+		return shift;
+	}
+
+	/**
+	 * Decodes the bytes of a compact Latin-1 string into the specified array.
+	 */
+	static void decodeLatin1(byte[] latin1, char[] dest, int destPos) {
+		for (int i = 0; i < latin1.length; i++) {
+			dest[destPos + i] = (char) (latin1[i] & 0xff);
+		}
+	}
+
+	/**
+	 * Decodes the bytes of a UTF-16 string into the specified array. The shift
+	 * is that of the high byte of each character, which is 8 if the dumped JVM
+	 * was big-endian and 0 if it was little-endian.
+	 */
+	static void decodeUtf16(byte[] utf16, int hiByteShift, char[] dest, int destPos) {
+		int loByteShift = 8 - hiByteShift;
+		for (int i = 0; i < utf16.length / 2; i++) {
+			int first = utf16[i * 2] & 0xff;
+			int second = utf16[i * 2 + 1] & 0xff;
+			dest[destPos + i] = (char) (first << hiByteShift | second << loByteShift);
+		}
+	}
+
+	/**
+	 * The backing array of a string and the range of it that holds the string's
+	 * characters.
+	 */
+	private static final class StringValue {
+
+		private final IPrimitiveArray array;
+		private final int offset;
+		private final int length;
+		private final boolean bytes;
+		private final boolean utf16;
+		private final int hiByteShift;
+
+		private StringValue(IPrimitiveArray array, int offset, int length, boolean bytes, boolean utf16,
+				int hiByteShift) {
+			this.array = array;
+			this.offset = offset;
+			this.length = length;
+			this.bytes = bytes;
+			this.utf16 = utf16;
+			this.hiByteShift = hiByteShift;
+		}
+
+		private static StringValue of(IObject string) throws SnapshotException {
+			if (!"java.lang.String".equals(string.getClazz().getName())) {
+				throw new IllegalArgumentException("Object " + string.getTechnicalName() + " is not a string");
+			}
+
+			IObject value = VALUE.getObject(string);
+			if (!(value instanceof IPrimitiveArray)) {
+				return new StringValue(null, 0, 0, false, false, 0);
+			}
+
+			IPrimitiveArray array = (IPrimitiveArray) value;
+			if (array.getType() == IObject.Type.BYTE) {
+				boolean utf16 = CODER.getInt(string, 0) == CODER_UTF16;
+				int length = utf16 ? array.getLength() / 2 : array.getLength();
+				int hiByteShift = utf16 ? getHiByteShift(string.getSnapshot()) : 0;
+				return new StringValue(array, 0, length, true, utf16, hiByteShift);
+			}
+
+			// Older JVMs may share a char[] between strings, using an offset and count
+			int offset = OFFSET.getInt(string, 0);
+			int length = COUNT.isPresent(string) ? COUNT.getInt(string, 0) : array.getLength() - offset;
+			return new StringValue(array, offset, length, false, false, 0);
+		}
+
+		/**
+		 * Decodes the specified range of characters into the specified array.
+		 */
+		private void read(int from, int count, char[] dest, int destPos) {
+			if (count == 0) {
+				return;
+			}
+
+			if (!bytes) {
+				char[] chars = (char[]) array.getValueArray(offset + from, count);
+				System.arraycopy(chars, 0, dest, destPos, count);
+			} else if (!utf16) {
+				decodeLatin1((byte[]) array.getValueArray(from, count), dest, destPos);
+			} else {
+				decodeUtf16((byte[]) array.getValueArray(from * 2, count * 2), hiByteShift, dest, destPos);
+			}
+		}
+
+		/**
+		 * Returns whether the characters at the start of this string equal the
+		 * specified characters, reading a chunk at a time and stopping at the first
+		 * difference. The caller ensures that this string is long enough.
+		 */
+		private boolean regionMatches(CharSequence other) {
+			char[] chunk = new char[Math.min(other.length(), CHUNK_SIZE)];
+			for (int from = 0; from < other.length(); from += chunk.length) {
+				int count = Math.min(chunk.length, other.length() - from);
+				read(from, count, chunk, 0);
+				for (int i = 0; i < count; i++) {
+					if (chunk[i] != other.charAt(from + i)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
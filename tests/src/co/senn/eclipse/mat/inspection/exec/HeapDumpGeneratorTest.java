@@ -0,0 +1,296 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.exec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that {@link HeapDumpGenerator} writes well-formed HPROF files, by
+ * reading them back record by record.
+ * 
+ * @author Andy Senn
+ */
+public class HeapDumpGeneratorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writesWellFormedDump() throws IOException {
+		File file = folder.newFile("synthetic.hprof");
+		long objects = newGenerator().write(file, 1);
+
+		Dump dump = Dump.read(file);
+		assertEquals(objects, dump.objects.size());
+		assertTrue(dump.roots > 0);
+		assertTrue(dump.classNames.contains("java.lang.String"));
+		assertTrue(dump.classNames.contains("java.util.HashMap"));
+		assertTrue(dump.classNames.stream().anyMatch(name -> name.startsWith("com.example.a.")));
+		assertTrue(dump.classNames.stream().anyMatch(name -> name.startsWith("org.example.b.")));
+
+		for (long reference : dump.references) {
+			assertTrue("Dangling reference " + Long.toHexString(reference), dump.objects.contains(reference));
+		}
+	}
+
+	@Test
+	public void scalesObjectCounts() throws IOException {
+		File small = folder.newFile("small.hprof");
+		File large = folder.newFile("large.hprof");
+		long smallObjects = newGenerator().write(small, 1);
+		long largeObjects = newGenerator().write(large, 3);
+
+		assertTrue(largeObjects > 2 * smallObjects);
+		assertEquals(largeObjects, Dump.read(large).objects.size());
+	}
+
+	@Test
+	public void writesEmptyShapes() throws IOException {
+		File file = folder.newFile("empty.hprof");
+		HeapDumpGenerator generator = new HeapDumpGenerator().setClasses(0, 0).setHashMaps(0, 0).setChainDepth(0)
+				.setStrings(0, 1);
+
+		assertEquals(generator.write(file, 1), Dump.read(file).objects.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInvalidScale() throws IOException {
+		newGenerator().write(folder.newFile("invalid.hprof"), 0);
+	}
+
+	private static HeapDumpGenerator newGenerator() {
+		return new HeapDumpGenerator().setClasses(3, 10).setHashMaps(2, 50).setChainDepth(100).setStrings(200, 20)
+				.setPackages("com.example.a", "org.example.b");
+	}
+
+	/**
+	 * The parts of a dump that are checked, read with the structure of the
+	 * HPROF format rather than with the generator's own code.
+	 */
+	private static final class Dump {
+
+		private final Map<Long, String> strings = new HashMap<>();
+		private final Set<String> classNames = new HashSet<>();
+		private final Map<Long, Long> superclasses = new HashMap<>();
+		private final Map<Long, byte[]> fieldTypes = new HashMap<>();
+		private final Set<Long> objects = new HashSet<>();
+		private final List<Long> references = new ArrayList<>();
+		private int roots;
+
+		// Instances are checked once all classes are known, since a class may follow its instances
+		private final List<Object[]> instances = new ArrayList<>();
+
+		private static Dump read(File file) throws IOException {
+			Dump dump = new Dump();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				dump.readHeader(in);
+				dump.readRecords(in);
+			}
+			return dump;
+		}
+
+		private void readHeader(DataInputStream in) throws IOException {
+			StringBuilder header = new StringBuilder();
+			for (int b = in.read(); b != 0; b = in.read()) {
+				header.append((char) b);
+			}
+			assertEquals("JAVA PROFILE 1.0.2", header.toString());
+			assertEquals(8, in.readInt());
+			in.readLong();
+		}
+
+		private void readRecords(DataInputStream in) throws IOException {
+			while (true) {
+				int tag = in.readUnsignedByte();
+				in.readInt();
+				int length = in.readInt();
+				switch (tag) {
+				case 0x01:
+					long id = in.readLong();
+					byte[] utf8 = new byte[length - 8];
+					in.readFully(utf8);
+					strings.put(id, new String(utf8, StandardCharsets.UTF_8));
+					break;
+				case 0x02:
+					in.readInt();
+					in.readLong();
+					in.readInt();
+					classNames.add(strings.get(in.readLong()).replace('/', '.'));
+					break;
+				case 0x1C:
+					byte[] segment = new byte[length];
+					in.readFully(segment);
+					readSegment(new DataInputStream(new ByteArrayInputStream(segment)));
+					break;
+				case 0x2C:
+					assertEquals(0, length);
+					assertEquals("Data after the end of the dump", -1, in.read());
+					checkInstances();
+					return;
+				default:
+					throw new AssertionError("Unexpected record " + Integer.toHexString(tag));
+				}
+			}
+		}
+
+		private void readSegment(DataInputStream in) throws IOException {
+			int read = 0;
+			while (in.available() > 0) {
+				int tag = in.readUnsignedByte();
+				switch (tag) {
+				case 0xFF:
+				case 0x05:
+					references.add(in.readLong());
+					roots++;
+					break;
+				case 0x20:
+					readClass(in);
+					break;
+				case 0x21:
+					long objectId = in.readLong();
+					in.readInt();
+					long classId = in.readLong();
+					byte[] values = new byte[in.readInt()];
+					in.readFully(values);
+					instances.add(new Object[] { classId, values });
+					addObject(objectId);
+					break;
+				case 0x22:
+					addObject(in.readLong());
+					in.readInt();
+					int elements = in.readInt();
+					references.add(in.readLong());
+					for (int i = 0; i < elements; i++) {
+						addReference(in.readLong());
+					}
+					break;
+				case 0x23:
+					addObject(in.readLong());
+					in.readInt();
+					int count = in.readInt();
+					in.skipBytes(count * getSize(in.readByte()));
+					break;
+				default:
+					throw new AssertionError("Unexpected sub-record " + Integer.toHexString(tag));
+				}
+				read++;
+			}
+			assertTrue("Empty segment", read > 0);
+		}
+
+		private void readClass(DataInputStream in) throws IOException {
+			long classId = in.readLong();
+			in.readInt();
+			superclasses.put(classId, in.readLong());
+			in.skipBytes(5 * 8 + 4);
+			for (int i = in.readUnsignedShort(); i > 0; i--) {
+				in.readUnsignedShort();
+				in.skipBytes(getSize(in.readByte()));
+			}
+			for (int i = in.readUnsignedShort(); i > 0; i--) {
+				in.readLong();
+				byte type = in.readByte();
+				if (type == 2) {
+					addReference(in.readLong());
+				} else {
+					in.skipBytes(getSize(type));
+				}
+			}
+			byte[] types = new byte[in.readUnsignedShort()];
+			for (int i = 0; i < types.length; i++) {
+				assertTrue(strings.containsKey(in.readLong()));
+				types[i] = in.readByte();
+			}
+			fieldTypes.put(classId, types);
+			addObject(classId);
+		}
+
+		private void checkInstances() throws IOException {
+			for (Object[] instance : instances) {
+				long classId = (Long) instance[0];
+				byte[] values = (byte[]) instance[1];
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(values));
+				for (long c = classId; c != 0; c = superclasses.get(c)) {
+					assertTrue("Unknown class " + Long.toHexString(c), fieldTypes.containsKey(c));
+					for (byte type : fieldTypes.get(c)) {
+						if (type == 2) {
+							addReference(in.readLong());
+						} else {
+							in.skipBytes(getSize(type));
+						}
+					}
+				}
+				assertEquals("Instance of " + Long.toHexString(classId) + " has extra bytes", 0, in.available());
+			}
+
+			for (long superclass : superclasses.values()) {
+				assertTrue(superclass == 0 || superclasses.containsKey(superclass));
+			}
+		}
+
+		private void addObject(long objectId) {
+			assertTrue("Duplicate object " + Long.toHexString(objectId), objects.add(objectId));
+		}
+
+		private void addReference(long objectId) {
+			if (objectId != 0) {
+				references.add(objectId);
+			}
+		}
+
+		private static int getSize(byte type) {
+			switch (type) {
+			case 2:
+				return 8;
+			case 4:
+			case 8:
+				return 1;
+			case 5:
+			case 9:
+				return 2;
+			case 6:
+			case 10:
+				return 4;
+			case 7:
+			case 11:
+				return 8;
+			default:
+				throw new AssertionError("Unknown basic type " + type);
+			}
+		}
+
+	}
+
+}
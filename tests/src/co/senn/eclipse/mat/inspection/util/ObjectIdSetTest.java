@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ObjectIdSet}, in particular IDs at the edges of its words and
+ * of its 65,536-ID chunks, against a {@link BitSet}.
+ * 
+ * @author Andy Senn
+ */
+public class ObjectIdSetTest {
+
+	// The first and last IDs of words and chunks, and the largest possible ID
+	private static final int[] EDGES = { 0, 1, 63, 64, 65, 65_535, 65_536, 65_537, 131_071, 131_072, 1 << 20,
+			Integer.MAX_VALUE - 1, Integer.MAX_VALUE };
+
+	@Test
+	public void addsAndFindsEdges() {
+		ObjectIdSet set = new ObjectIdSet();
+		for (int objectId : EDGES) {
+			assertFalse(set.contains(objectId));
+			assertTrue(set.add(objectId));
+			assertFalse(set.add(objectId));
+			assertTrue(set.contains(objectId));
+		}
+
+		assertEquals(EDGES.length, set.size());
+		assertArrayEquals(EDGES, set.toArray());
+		assertFalse(set.contains(2));
+		assertFalse(set.contains(62));
+		assertFalse(set.contains(65_534));
+		assertFalse(set.contains(131_073));
+	}
+
+	@Test
+	public void removesEdges() {
+		ObjectIdSet set = ObjectIdSet.of(EDGES);
+		for (int objectId : EDGES) {
+			assertTrue(set.remove(objectId));
+			assertFalse(set.remove(objectId));
+			assertFalse(set.contains(objectId));
+		}
+
+		assertTrue(set.isEmpty());
+		assertArrayEquals(new int[0], set.toArray());
+	}
+
+	@Test
+	public void ignoresNegativeIdsWhenQuerying() {
+		ObjectIdSet set = ObjectIdSet.of(0, 65_536);
+		assertFalse(set.contains(-1));
+		assertFalse(set.contains(Integer.MIN_VALUE));
+		assertFalse(set.remove(-1));
+		assertEquals(2, set.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsNegativeIds() {
+		new ObjectIdSet().add(-1);
+	}
+
+	@Test
+	public void iteratesInOrder() throws Exception {
+		int[] shuffled = EDGES.clone();
+		for (int i = 0; i < shuffled.length / 2; i++) {
+			int other = shuffled.length - 1 - i;
+			int swap = shuffled[i];
+			shuffled[i] = shuffled[other];
+			shuffled[other] = swap;
+		}
+
+		ObjectIdSet set = ObjectIdSet.of(shuffled);
+		int[] visited = new int[set.size()];
+		int[] count = new int[1];
+		set.forEach(objectId -> visited[count[0]++] = objectId);
+		assertArrayEquals(EDGES, visited);
+		assertArrayEquals(EDGES, set.toArray());
+	}
+
+	@Test
+	public void combinesSetsOfDifferentLengths() {
+		// The short set has no chunks beyond the first, the long one has no first chunk
+		ObjectIdSet small = ObjectIdSet.of(0, 63, 64, 65_535);
+		ObjectIdSet large = ObjectIdSet.of(64, 65_535, 65_536, 1 << 20);
+
+		assertArrayEquals(new int[] { 0, 63, 64, 65_535, 65_536, 1 << 20 }, small.copy().or(large).toArray());
+		assertArrayEquals(new int[] { 0, 63, 64, 65_535, 65_536, 1 << 20 }, large.copy().or(small).toArray());
+		assertArrayEquals(new int[] { 64, 65_535 }, small.copy().and(large).toArray());
+		assertArrayEquals(new int[] { 64, 65_535 }, large.copy().and(small).toArray());
+		assertArrayEquals(new int[] { 0, 63 }, small.copy().andNot(large).toArray());
+		assertArrayEquals(new int[] { 65_536, 1 << 20 }, large.copy().andNot(small).toArray());
+		assertEquals(2, small.copy().and(large).size());
+	}
+
+	@Test
+	public void copiesIndependently() {
+		ObjectIdSet set = ObjectIdSet.of(1, 65_536);
+		ObjectIdSet copy = set.copy();
+		copy.add(2);
+		copy.remove(65_536);
+
+		assertArrayEquals(new int[] { 1, 65_536 }, set.toArray());
+		assertArrayEquals(new int[] { 1, 2 }, copy.toArray());
+	}
+
+	@Test
+	public void agreesWithBitSet() {
+		Random random = new Random(42);
+		ObjectIdSet set = new ObjectIdSet();
+		BitSet expected = new BitSet();
+		for (int i = 0; i < 100_000; i++) {
+			// Cluster IDs around chunk edges, where the bitmap is most likely to be wrong
+			int objectId = Math.max(0, (random.nextInt(8) << 16) + random.nextInt(256) - 128);
+			if (random.nextInt(4) == 0) {
+				assertEquals(expected.get(objectId), set.remove(objectId));
+				expected.clear(objectId);
+			} else {
+				assertEquals(!expected.get(objectId), set.add(objectId));
+				expected.set(objectId);
+			}
+		}
+
+		assertEquals(expected.cardinality(), set.size());
+		assertArrayEquals(expected.stream().toArray(), set.toArray());
+		assertTrue(Arrays.stream(set.toArray()).allMatch(set::contains));
+	}
+
+}
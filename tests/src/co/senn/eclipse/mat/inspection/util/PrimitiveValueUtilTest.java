@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests the parsing of numbers by {@link PrimitiveValueUtil}, which must agree
+ * with {@link Long#parseLong(String)} without throwing.
+ * 
+ * @author Andy Senn
+ */
+public class PrimitiveValueUtilTest {
+
+	@Test
+	public void parsesLongBoundaries() {
+		assertEquals(Long.valueOf(Long.MAX_VALUE), parseLong("9223372036854775807"));
+		assertEquals(Long.valueOf(Long.MIN_VALUE), parseLong("-9223372036854775808"));
+		assertEquals(Long.valueOf(Long.MAX_VALUE), parseLong("+9223372036854775807"));
+	}
+
+	@Test
+	public void rejectsLongsOutOfRange() {
+		assertNull(parseLong("9223372036854775808"));
+		assertNull(parseLong("+9223372036854775808"));
+		assertNull(parseLong("-9223372036854775809"));
+		assertNull(parseLong("99999999999999999999"));
+	}
+
+	@Test
+	public void parsesSignsAndZero() {
+		assertEquals(Long.valueOf(0), parseLong("0"));
+		assertEquals(Long.valueOf(0), parseLong("-0"));
+		assertEquals(Long.valueOf(0), parseLong("+0"));
+		assertEquals(Long.valueOf(42), parseLong("+42"));
+		assertEquals(Long.valueOf(-42), parseLong("-42"));
+		assertEquals(Long.valueOf(7), parseLong("0007"));
+	}
+
+	@Test
+	public void rejectsMalformedLongs() {
+		assertNull(parseLong(""));
+		assertNull(parseLong("+"));
+		assertNull(parseLong("-"));
+		assertNull(parseLong("--1"));
+		assertNull(parseLong("+-1"));
+		assertNull(parseLong(" 1"));
+		assertNull(parseLong("1 "));
+		assertNull(parseLong("1.0"));
+		assertNull(parseLong("0x10"));
+		assertNull(parseLong(null));
+	}
+
+	@Test
+	public void parsesIntBoundaries() {
+		assertEquals(Integer.valueOf(Integer.MAX_VALUE), parseInt("2147483647"));
+		assertEquals(Integer.valueOf(Integer.MIN_VALUE), parseInt("-2147483648"));
+		assertEquals(Integer.valueOf(Integer.MAX_VALUE), parseInt("+2147483647"));
+	}
+
+	@Test
+	public void rejectsIntsOutOfRange() {
+		assertNull(parseInt("2147483648"));
+		assertNull(parseInt("-2147483649"));
+		assertNull(parseInt("9223372036854775807"));
+		assertNull(parseInt("-9223372036854775808"));
+	}
+
+	@Test
+	public void rejectsMalformedInts() {
+		assertNull(parseInt(""));
+		assertNull(parseInt("+"));
+		assertNull(parseInt("-"));
+		assertNull(parseInt("1e3"));
+		assertNull(parseInt(null));
+	}
+
+	@Test
+	public void passesBoxedValuesThrough() {
+		assertEquals(Integer.valueOf(-5), parseInt(Short.valueOf((short) -5)));
+		assertEquals(Integer.valueOf(Integer.MIN_VALUE), parseInt(Integer.MIN_VALUE));
+		assertEquals(Long.valueOf(Long.MIN_VALUE), parseLong(Long.MIN_VALUE));
+		assertEquals(Long.valueOf(Integer.MAX_VALUE), parseLong(Integer.MAX_VALUE));
+	}
+
+	@Test
+	public void doesNotCallConsumerOnFailure() {
+		assertFalse(PrimitiveValueUtil.tryParseLong("x", value -> {
+			throw new AssertionError("Consumer called with " + value);
+		}));
+		assertFalse(PrimitiveValueUtil.tryParseInt("", value -> {
+			throw new AssertionError("Consumer called with " + value);
+		}));
+		assertTrue(PrimitiveValueUtil.tryParseInt("1", value -> {
+		}));
+	}
+
+	private static Long parseLong(Object object) {
+		AtomicReference<Long> parsed = new AtomicReference<>();
+		return PrimitiveValueUtil.tryParseLong(object, parsed::set) ? parsed.get() : null;
+	}
+
+	private static Integer parseInt(Object object) {
+		AtomicReference<Integer> parsed = new AtomicReference<>();
+		return PrimitiveValueUtil.tryParseInt(object, parsed::set) ? parsed.get() : null;
+	}
+
+}
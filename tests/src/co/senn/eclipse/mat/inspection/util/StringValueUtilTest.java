@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Andy Senn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package co.senn.eclipse.mat.inspection.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests the decoding of the compact Latin-1 and the UTF-16 layouts of strings
+ * by {@link StringValueUtil}, against the platform's own encoders.
+ * 
+ * @author Andy Senn
+ */
+public class StringValueUtilTest {
+
+	// Every Latin-1 character, including those whose bytes are negative
+	private static final String LATIN1;
+
+	// Characters of every UTF-16 byte pattern, including a surrogate pair
+	private static final String UTF16 = "a\u00e9\u0100\u00ff\u7fff\u8000\uffff\ud83d\ude00z";
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		for (char c = 0; c <= 0xff; c++) {
+			sb.append(c);
+		}
+		LATIN1 = sb.toString();
+	}
+
+	@Test
+	public void decodesLatin1() {
+		assertEquals(LATIN1, decodeLatin1(LATIN1.getBytes(StandardCharsets.ISO_8859_1)));
+	}
+
+	@Test
+	public void decodesBigEndianUtf16() {
+		assertEquals(UTF16, decodeUtf16(UTF16.getBytes(StandardCharsets.UTF_16BE), 8));
+		assertEquals(LATIN1, decodeUtf16(LATIN1.getBytes(StandardCharsets.UTF_16BE), 8));
+	}
+
+	@Test
+	public void decodesLittleEndianUtf16() {
+		assertEquals(UTF16, decodeUtf16(UTF16.getBytes(StandardCharsets.UTF_16LE), 0));
+		assertEquals(LATIN1, decodeUtf16(LATIN1.getBytes(StandardCharsets.UTF_16LE), 0));
+	}
+
+	@Test
+	public void decodesIntoOffset() {
+		char[] dest = "[----]".toCharArray();
+		StringValueUtil.decodeUtf16("\u00e9\ufffe".getBytes(StandardCharsets.UTF_16LE), 0, dest, 2);
+		StringValueUtil.decodeLatin1(new byte[] { (byte) 0xe9 }, dest, 1);
+		assertEquals("[\u00e9\u00e9\ufffe-]", new String(dest));
+	}
+
+	@Test
+	public void decodesEmptyStrings() {
+		assertEquals("", decodeLatin1(new byte[0]));
+		assertEquals("", decodeUtf16(new byte[0], 0));
+	}
+
+	private static String decodeLatin1(byte[] bytes) {
+		char[] chars = new char[bytes.length];
+		StringValueUtil.decodeLatin1(bytes, chars, 0);
+		return new String(chars);
+	}
+
+	private static String decodeUtf16(byte[] bytes, int hiByteShift) {
+		char[] chars = new char[bytes.length / 2];
+		StringValueUtil.decodeUtf16(bytes, hiByteShift, chars, 0);
+		return new String(chars);
+	}
+
+}